@@ -3,12 +3,33 @@ package com.vifinancenews;
 import com.vifinancenews.auth.controllers.AuthController;
 import com.vifinancenews.auth.controllers.GoogleAuthController;
 import com.vifinancenews.auth.controllers.GuestController;
+import com.vifinancenews.auth.middleware.RateLimitFilter;
+import com.vifinancenews.common.config.AdminServer;
+import com.vifinancenews.common.config.DatabaseConfig;
+import com.vifinancenews.common.daos.TransactionExecutor;
+import com.vifinancenews.common.migrations.SchemaMigrator;
+import com.vifinancenews.common.utilities.EmailDirectory;
+import com.vifinancenews.common.utilities.EmailUtility;
+import com.vifinancenews.common.utilities.PasswordHash;
+import com.vifinancenews.common.utilities.SessionManager;
 
 import io.javalin.Javalin;
 import io.javalin.http.staticfiles.Location;
 
 public class Main {
     public static void main(String[] args) {
+        // Bring the schema up to date before any job or handler touches it (MIGRATE_ON_STARTUP)
+        SchemaMigrator.migrateOnStartup();
+
+        // Background OTP email delivery (Redis-backed outbox, pooled SMTP connections)
+        EmailUtility.startDeliveryWorkers();
+
+        // Redis sessions or signed tokens (SESSION_MODE); starts the revocation listener in token mode
+        SessionManager.start();
+
+        // Registered-email filter: built once if missing, then rebuilt daily
+        EmailDirectory.startMaintenance();
+
         Javalin app = Javalin.create(config -> {
             // CORS and Routing Optimizations
             config.router.contextPath = "/";
@@ -39,6 +60,12 @@ public class Main {
             ctx.cookie("session_timeout", String.valueOf(System.currentTimeMillis()), 600); // Session timeout in seconds
         });
 
+        // Throttle BCrypt / OTP / registration endpoints per IP and per email
+        app.before("/api/verify", RateLimitFilter.verify);
+        app.before("/api/forgot-password", RateLimitFilter.forgotPassword);
+        app.before("/api/register", RateLimitFilter.register);
+        app.before("/api/google-login", RateLimitFilter.googleLogin);
+
         // **Auth Routes**
         app.post("/api/register", AuthController.register);
         app.post("/api/verify", AuthController.verifyCredentials);
@@ -53,6 +80,13 @@ public class Main {
         GuestController.registerRoutes(app);
         app.post("/api/google-login", GoogleAuthController.handleGoogleLogin);
 
+        // **Internal Routes** (admin listener only: loopback by default, never the public port)
+        Javalin admin = AdminServer.start(7999);
+        admin.get("/api/internal/db-pool", ctx -> ctx.json(DatabaseConfig.getPoolStats()));
+        admin.get("/api/internal/hashing", ctx -> ctx.json(PasswordHash.getStats()));
+        admin.get("/api/internal/mail", ctx -> ctx.json(EmailUtility.getDeliveryStats()));
+        admin.get("/api/internal/tx-retries", ctx -> ctx.json(TransactionExecutor.getRetryStats()));
+
         System.out.println("Server running on http://localhost:6999/index.html");
     }
 }
@@ -1,11 +1,14 @@
 package com.vifinancenews.auth.controllers;
 
 import com.vifinancenews.auth.services.AuthenticationService;
-import com.vifinancenews.common.utilities.RedisSessionManager;
+import com.vifinancenews.common.utilities.PasswordHash.HashingRejectedException;
+import com.vifinancenews.common.utilities.SessionManager;
+import io.javalin.http.Context;
 import io.javalin.http.Handler;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class AuthController {
     private static final AuthenticationService authService = new AuthenticationService();
@@ -27,13 +30,15 @@ public class AuthController {
             }
     
             // avatarLink and bio set as null by default
-            boolean success = authService.registerUser(email, password, userName, null, null, loginMethod);
-    
-            if (success) {
-                ctx.status(201).json(Map.of("message", "Registration successful"));
-            } else {
-                ctx.status(400).json(Map.of("error", "Registration failed"));
-            }
+            ctx.future(() -> authService.registerUser(email, password, userName, null, null, loginMethod)
+                    .thenAccept(success -> {
+                        if (success) {
+                            ctx.status(201).json(Map.of("message", "Registration successful"));
+                        } else {
+                            ctx.status(400).json(Map.of("error", "Registration failed"));
+                        }
+                    })
+                    .exceptionally(error -> respondToAsyncFailure(ctx, error)));
         } catch (Exception e) {
             e.printStackTrace();
             ctx.status(500).json(Map.of("error", "Internal server error", "details", e.getMessage()));
@@ -47,12 +52,16 @@ public class AuthController {
             String email = requestBody.get("email");
             String password = requestBody.get("password");
 
-            boolean isVerified = authService.verifyPassword(email, password);
-            if (isVerified) {
-                ctx.status(200).json(Map.of("message", "OTP sent (or not required for Google login)"));
-            } else {
-                ctx.status(401).json(Map.of("error", "Invalid email or password"));
-            }
+            CompletableFuture<Boolean> verification = authService.verifyPassword(email, password);
+            ctx.future(() -> verification
+                    .thenAccept(isVerified -> {
+                        if (isVerified) {
+                            ctx.status(200).json(Map.of("message", "OTP sent (or not required for Google login)"));
+                        } else {
+                            ctx.status(401).json(Map.of("error", "Invalid email or password"));
+                        }
+                    })
+                    .exceptionally(error -> respondToAsyncFailure(ctx, error)));
         } catch (Exception e) {
             e.printStackTrace(); // OK for dev, but log properly in prod
             ctx.status(500).json(Map.of(
@@ -79,13 +88,8 @@ public class AuthController {
             return;
         }
 
-        // Create session with userId stored as string
-        Map<String, Object> sessionData = new HashMap<>();
-        sessionData.put("userId", result.userId()); // safe serialization
-        String sessionId = RedisSessionManager.createSession(sessionData);
-
-        // Store session ID in cookie
-        ctx.cookie("SESSION_ID", sessionId, 3600);
+        // Redis session or signed token, depending on SESSION_MODE; sets the SESSION_ID cookie
+        SessionManager.open(ctx, result.userId());
 
         if (result.softDeleted()) {
             ctx.status(200).json(Map.of(
@@ -102,16 +106,14 @@ public class AuthController {
     };
 
     public static Handler reactivateAccount = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        Map<String, Object> sessionData = RedisSessionManager.getSession(sessionId);
+        String userId = SessionManager.resolveUserId(ctx);
 
-        if (sessionData == null || sessionData.get("userId") == null) {
+        if (userId == null) {
             ctx.status(401).json(Map.of("error", "Unauthorized"));
             return;
         }
 
         try {
-            String userId = (String) sessionData.get("userId");
             boolean reactivated = authService.restoreUser(userId);
 
             if (reactivated) {
@@ -125,20 +127,15 @@ public class AuthController {
     };
 
     public static Handler logout = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        if (sessionId != null) {
-            RedisSessionManager.destroySession(sessionId);
-            ctx.removeCookie("SESSION_ID");
-        }
+        SessionManager.close(ctx);
         ctx.status(200).json(Map.of("message", "Logout successful"));
     };
 
     public static Handler checkAuth = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        Map<String, Object> sessionData = RedisSessionManager.getSession(sessionId);
+        String userId = SessionManager.resolveUserId(ctx);
 
-        if (sessionData != null && sessionData.get("userId") != null) {
-            ctx.json(Map.of("loggedIn", true, "userId", sessionData.get("userId")));
+        if (userId != null) {
+            ctx.json(Map.of("loggedIn", true, "userId", userId));
         } else {
             ctx.json(Map.of("loggedIn", false));
         }
@@ -179,17 +176,35 @@ public class AuthController {
                 return;
             }
     
-            boolean success = authService.resetPassword(email, otp, newPassword);
-    
-            if (success) {
-                ctx.status(200).json(Map.of("message", "Password reset successful"));
-            } else {
-                ctx.status(400).json(Map.of("error", "Password reset failed. Check OTP or email."));
-            }
+            CompletableFuture<Boolean> reset = authService.resetPassword(email, otp, newPassword);
+            ctx.future(() -> reset
+                    .thenAccept(success -> {
+                        if (success) {
+                            ctx.status(200).json(Map.of("message", "Password reset successful"));
+                        } else {
+                            ctx.status(400).json(Map.of("error", "Password reset failed. Check OTP or email."));
+                        }
+                    })
+                    .exceptionally(error -> respondToAsyncFailure(ctx, error)));
         } catch (Exception e) {
             e.printStackTrace();
             ctx.status(500).json(Map.of("error", "Internal server error", "details", e.getMessage()));
         }
     };
-    
+
+    // Maps a failed hashing/DB future to a response: 503 when the hashing pool is saturated, 500 otherwise
+    private static Void respondToAsyncFailure(Context ctx, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HashingRejectedException) {
+            ctx.header("Retry-After", "1");
+            ctx.status(503).json(Map.of("error", "Server busy, please retry shortly"));
+        } else {
+            cause.printStackTrace();
+            ctx.status(500).json(Map.of(
+                "error", "Internal server error",
+                "details", cause.getMessage() != null ? cause.getMessage() : "Unknown error"
+            ));
+        }
+        return null;
+    }
 }
@@ -5,10 +5,9 @@ import com.vifinancenews.auth.services.AuthenticationService.LoginResult;
 import com.vifinancenews.auth.services.GoogleAuthService;
 import com.vifinancenews.common.daos.IdentifierDAO;
 import com.vifinancenews.common.models.Identifier;
-import com.vifinancenews.common.utilities.RedisSessionManager;
+import com.vifinancenews.common.utilities.SessionManager;
 import io.javalin.http.Handler;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public class GoogleAuthController {
@@ -34,8 +33,8 @@ public class GoogleAuthController {
             String name = userDetails.getName();
             System.out.println("User details: " + name + ", " + email);
     
-            // Step 2: Look up the user by email
-            Identifier existingUser = IdentifierDAO.getIdentifierByEmail(email);
+            // Step 2: Look up the user by email (unknown emails are usually answered without the DB)
+            Identifier existingUser = authService.findByEmail(email);
     
             // Step 3: If the user doesn't exist, register them
             if (existingUser == null) {
@@ -70,12 +69,8 @@ public class GoogleAuthController {
             }
     
             // Step 5: Create a Redis-backed session for the user (tie session to user)
-            Map<String, Object> sessionData = new HashMap<>();
-            sessionData.put("userId", loginResult.userId());
-            String sessionId = RedisSessionManager.createSession(sessionData);
-    
-            // Step 6: Set the session cookie in the response
-            ctx.cookie("SESSION_ID", sessionId, 3600); // 1 hour
+            // Step 6: Set the session cookie in the response (Redis session or signed token, per SESSION_MODE)
+            SessionManager.open(ctx, loginResult.userId());
     
             // Step 7: Respond with success message and user ID
             System.out.println("Successful login");
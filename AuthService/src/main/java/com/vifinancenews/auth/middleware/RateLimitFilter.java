@@ -0,0 +1,61 @@
+package com.vifinancenews.auth.middleware;
+
+import com.vifinancenews.common.utilities.RateLimiter;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Per-IP and per-email throttling for the expensive auth endpoints (BCrypt checks, OTP emails,
+ * account creation, Google token verification). Each handler is registered as a before handler on
+ * the path it protects.
+ */
+public class RateLimitFilter {
+
+    private static final RateLimiter verifyByIp = new RateLimiter("verify:ip", 20, Duration.ofMinutes(1));
+    private static final RateLimiter verifyByEmail = new RateLimiter("verify:email", 10, Duration.ofMinutes(1));
+    private static final RateLimiter forgotByIp = new RateLimiter("forgot:ip", 5, Duration.ofMinutes(1));
+    private static final RateLimiter forgotByEmail = new RateLimiter("forgot:email", 3, Duration.ofMinutes(15));
+    private static final RateLimiter registerByIp = new RateLimiter("register:ip", 5, Duration.ofMinutes(1));
+    private static final RateLimiter googleByIp = new RateLimiter("google:ip", 20, Duration.ofMinutes(1));
+
+    // One before handler per endpoint, so Javalin's matcher (trailing and repeated slashes included) decides
+    public static Handler verify = limit(verifyByIp, verifyByEmail);
+    public static Handler forgotPassword = limit(forgotByIp, forgotByEmail);
+    public static Handler register = limit(registerByIp, null);
+    public static Handler googleLogin = limit(googleByIp, null);
+
+    private static Handler limit(RateLimiter byIp, RateLimiter byEmail) {
+        return ctx -> {
+            if (ctx.method() != HandlerType.POST) return;
+
+            long retryAfterMs = check(ctx, byIp, byEmail);
+            if (retryAfterMs > 0) {
+                ctx.header("Retry-After", String.valueOf((retryAfterMs + 999) / 1000));
+                ctx.status(429).json(Map.of("error", "Too many requests, please try again later"));
+                ctx.skipRemainingHandlers();
+            }
+        };
+    }
+
+    // Returns 0 if allowed, otherwise the longer of the per-IP / per-email waits
+    private static long check(Context ctx, RateLimiter byIp, RateLimiter byEmail) {
+        long wait = byIp.tryAcquire(ctx.ip());
+        if (wait > 0 || byEmail == null) return wait;
+
+        String email = emailFrom(ctx);
+        return email != null ? byEmail.tryAcquire(email.trim().toLowerCase()) : 0;
+    }
+
+    private static String emailFrom(Context ctx) {
+        try {
+            Object email = ctx.bodyAsClass(Map.class).get("email");
+            return email instanceof String value && !value.isBlank() ? value : null;
+        } catch (Exception e) {
+            return null; // Malformed body; the handler reports it
+        }
+    }
+}
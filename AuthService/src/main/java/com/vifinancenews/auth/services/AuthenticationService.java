@@ -2,13 +2,19 @@ package com.vifinancenews.auth.services;
 
 import com.vifinancenews.common.daos.AccountDAO;
 import com.vifinancenews.common.daos.IdentifierDAO;
+import com.vifinancenews.common.daos.IdentifierDAO.LoginResolution;
+import com.vifinancenews.common.daos.IdentifierDAO.Registration;
 import com.vifinancenews.common.models.Account;
 import com.vifinancenews.common.models.Identifier;
 
+import com.vifinancenews.common.utilities.EmailDirectory;
 import com.vifinancenews.common.utilities.EmailUtility;
+import com.vifinancenews.common.utilities.IDHash;
+import com.vifinancenews.common.utilities.LoginAttemptTracker;
 import com.vifinancenews.common.utilities.OTPGenerator;
 import com.vifinancenews.common.utilities.PasswordHash;
 import com.vifinancenews.common.utilities.RedisCacheService;
+import com.vifinancenews.common.utilities.SessionManager;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -16,19 +22,36 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AuthenticationService {
 
     public static record LoginResult(String userId, boolean softDeleted, boolean expired) {}
+
+    // Runs blocking DB/Redis/SMTP continuations after hashing so they never occupy hashing threads
+    private static final ExecutorService blockingExecutor = Executors.newVirtualThreadPerTaskExecutor();
     
     // ========== Registration ==========
-    public boolean registerUser(String email, String password, String userName, String avatarLink, String bio, String loginMethod) throws SQLException {
-        String passwordHash = loginMethod.equals("local") ? PasswordHash.hashPassword(password) : null;
-        Identifier newIdentifier = IdentifierDAO.insertIdentifier(email, passwordHash, loginMethod);
-        if (newIdentifier == null) return false;
-
-        Account newAccount = AccountDAO.insertAccount(newIdentifier.getId(), userName, avatarLink, bio);
-        return newAccount != null;
+    public CompletableFuture<Boolean> registerUser(String email, String password, String userName, String avatarLink, String bio, String loginMethod) {
+        // BCrypt runs on the hashing pool; the inserts continue on a virtual thread
+        CompletableFuture<String> passwordHash = loginMethod.equals("local")
+                ? PasswordHash.hashPasswordAsync(password)
+                : CompletableFuture.completedFuture(null);
+
+        return passwordHash.thenApplyAsync(hash -> {
+            try {
+                // Identifier and account are written together in one statement/transaction
+                Registration registration = IdentifierDAO.registerIdentifierWithAccount(email, hash, loginMethod, userName, avatarLink, bio);
+                if (registration == null) return false;
+                EmailDirectory.recordRegistered(email);
+                return true;
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, blockingExecutor);
     }
 
     public boolean createUserFromGoogle(String email, String userName, String avatarLink, String bio) throws SQLException {
@@ -44,133 +67,107 @@ public class AuthenticationService {
         // Use "google-login-placeholder" for password_hash when it's Google login
         String passwordHashForGoogle = "google-login-placeholder"; 
     
-        // Insert the identifier into the database with the placeholder password hash
-        Identifier newIdentifier = IdentifierDAO.insertIdentifier(email, passwordHashForGoogle, "google");
-        if (newIdentifier == null) return false;
-    
-        // Insert the account details (avatar, bio, etc.)
-        Account newAccount = AccountDAO.insertAccount(newIdentifier.getId(), generatedUserName, avatarLink, bio);
-        return newAccount != null;
+        // Insert the identifier (placeholder password hash) and the account details in one transaction
+        Registration registration = IdentifierDAO.registerIdentifierWithAccount(
+                email, passwordHashForGoogle, "google", generatedUserName, avatarLink, bio);
+        if (registration == null) return false;
+        EmailDirectory.recordRegistered(email);
+        return true;
     }
     
     
 
     // ========== Local Login ==========
-    public boolean verifyPassword(String email, String password) throws SQLException {
-        Identifier user = IdentifierDAO.getIdentifierByEmail(email);
-        if (user == null || !user.getLoginMethod().equalsIgnoreCase("local")) return false;
-        if (isAccountLocked(user)) return false;
-
-        boolean passwordMatches = PasswordHash.verifyPassword(password, user.getPasswordHash());
-        if (!passwordMatches) {
-            handleFailedLoginAttempt(user);
-            return false;
-        }
+    public CompletableFuture<Boolean> verifyPassword(String email, String password) throws SQLException {
+        Identifier user = findByEmail(email);
+        if (user == null || !user.getLoginMethod().equalsIgnoreCase("local")) return CompletableFuture.completedFuture(false);
+        if (isAccountLocked(user)) return CompletableFuture.completedFuture(false);
+
+        return PasswordHash.verifyPasswordAsync(password, user.getPasswordHash()).thenApplyAsync(passwordMatches -> {
+            if (!passwordMatches) {
+                handleFailedLoginAttempt(user);
+                return false;
+            }
 
-        sendOTP(email);
-        return true;
+            sendOTP(email);
+            return true;
+        }, blockingExecutor);
     }
 
     public LoginResult login(String email, String enteredOTP) throws SQLException {
-        Identifier user = IdentifierDAO.getIdentifierByEmail(email);
-        if (user == null || !user.getLoginMethod().equalsIgnoreCase("local")) return null;
-    
         if (!verifyOTP(email, enteredOTP)) return null;
-    
-        IdentifierDAO.resetFailedAttempts(email);
-        IdentifierDAO.updateLastLogin(email);
-    
-        // Get the account from the account table
-        Account account = AccountDAO.getAccountByUserId(user.getId());
-    
-        // If account is null, check if it's in the deleted_accounts table
-        if (account == null) {
-            account = AccountDAO.getDeletedAccountByUserId(user.getId());
-        }
-    
-        if (account != null) {
-            String accountId = account.getUserId(); // hashed userId
-    
-            boolean softDeleted = isAccountSoftDeleted(accountId);
-            boolean expired = softDeleted && !isWithinReactivationPeriod(accountId);
-    
-            //Only cache if it's not soft-deleted or has been reactivated
-            if (!softDeleted && !expired) {
-    
-                Map<String, String> userData = new HashMap<>();
-                userData.put("userName", account.getUserName());
-                userData.put("avatarLink", account.getAvatarLink() != null ? account.getAvatarLink() : "");
-                userData.put("bio", account.getBio() != null ? account.getBio() : "");
-        
-                RedisCacheService.cacheUserData(accountId, userData);
-            }
-    
-            return new LoginResult(accountId, softDeleted, expired);
-        } else {
-            System.err.println("Account not found for identifier ID: " + user.getId());
-            return null;
-        }
+
+        LoginAttemptTracker.reset(email);
+
+        // One statement: mark the login and resolve identifier, account and deleted_at
+        LoginResolution resolution = IdentifierDAO.resolveLogin(email, "local");
+        return completeLogin(resolution);
     }
     
     // ========== Google Login ==========  
     public LoginResult loginWithGoogle(String email) throws SQLException {
-        Identifier user = IdentifierDAO.getIdentifierByEmail(email);
-        if (user == null || !user.getLoginMethod().equalsIgnoreCase("google")) return null;
-    
-        IdentifierDAO.resetFailedAttempts(email);
-        IdentifierDAO.updateLastLogin(email);
-    
-        // Get the account from the account table
-        Account account = AccountDAO.getAccountByUserId(user.getId());
-    
-        // If account is null, check if it's in the deleted_accounts table
+        LoginResolution resolution = IdentifierDAO.resolveLogin(email, "google");
+        return completeLogin(resolution);
+    }
+
+    private LoginResult completeLogin(LoginResolution resolution) {
+        if (resolution == null) return null;
+
+        Account account = resolution.account();
         if (account == null) {
-            account = AccountDAO.getDeletedAccountByUserId(user.getId());
+            System.err.println("Account not found for identifier ID: " + resolution.identifier().getId());
+            return null;
         }
-    
-        if (account != null) {
-            String accountId = account.getUserId(); // hashed userId
-    
-            boolean softDeleted = isAccountSoftDeleted(accountId);
-            boolean expired = softDeleted && !isWithinReactivationPeriod(accountId);
 
-            //Only cache if it's not soft-deleted or has been reactivated
-            if (!softDeleted && !expired) {
-    
+        String accountId = account.getUserId(); // hashed userId
+
+        boolean softDeleted = resolution.softDeleted();
+        boolean expired = softDeleted && !isWithinReactivationPeriod(resolution.deletedAt());
+
+        //Only cache if it's not soft-deleted or has been reactivated
+        if (!softDeleted && !expired) {
+
             Map<String, String> userData = new HashMap<>();
             userData.put("userName", account.getUserName());
             userData.put("avatarLink", account.getAvatarLink() != null ? account.getAvatarLink() : "");
             userData.put("bio", account.getBio() != null ? account.getBio() : "");
-    
+
             RedisCacheService.cacheUserData(accountId, userData);
-            }
-            
-            return new LoginResult(accountId, softDeleted, expired);
-        } else {
-            System.err.println("Account not found for identifier ID: " + user.getId());
-            return null;
         }
+
+        return new LoginResult(accountId, softDeleted, expired);
     }
 
     // ========== Forgot Password ==========
     public boolean requestPasswordReset(String email) throws SQLException {
-        Identifier user = IdentifierDAO.getIdentifierByEmail(email);
+        Identifier user = findByEmail(email);
         if (user == null || !user.getLoginMethod().equalsIgnoreCase("local")) return false;
     
         sendOTP(email); // reuse existing OTP logic
         return true;
     }
 
-    public boolean resetPassword(String email, String otp, String newPassword) throws SQLException {
-        Identifier user = IdentifierDAO.getIdentifierByEmail(email);
-        if (user == null || !user.getLoginMethod().equalsIgnoreCase("local")) return false;
+    public CompletableFuture<Boolean> resetPassword(String email, String otp, String newPassword) throws SQLException {
+        Identifier user = findByEmail(email);
+        if (user == null || !user.getLoginMethod().equalsIgnoreCase("local")) return CompletableFuture.completedFuture(false);
     
         if (!verifyOTP(email, otp)) {
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
     
-        String newHashedPassword = PasswordHash.hashPassword(newPassword);
-        return IdentifierDAO.updatePassword(email, newHashedPassword);
+        return PasswordHash.hashPasswordAsync(newPassword).thenApplyAsync(newHashedPassword -> {
+            try {
+                boolean updated = IdentifierDAO.updatePassword(email, newHashedPassword);
+                if (updated) {
+                    LoginAttemptTracker.reset(email); // updatePassword also clears the DB lockout
+                    // Sessions opened with the old password must not survive the reset
+                    SessionManager.closeAll(IDHash.hashUUID(user.getId()));
+                }
+                return updated;
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, blockingExecutor);
     }
     
     // ========== Account Restoration ==========
@@ -179,6 +176,12 @@ public class AuthenticationService {
     }
     // ========== Internal Utilities ==========
     private boolean isAccountLocked(Identifier user) {
+        // Redis holds the live lockout; the DB value covers lockouts persisted before a Redis flush
+        LocalDateTime redisLockout = LoginAttemptTracker.getLockoutUntil(user.getEmail());
+        if (redisLockout != null) {
+            user.lockAccount(redisLockout);
+        }
+
         if (user.isLocked()) {
             System.out.println("Account locked until: " + user.getLockoutUntil());
             return true;
@@ -186,10 +189,9 @@ public class AuthenticationService {
         return false;
     }
 
-    private void handleFailedLoginAttempt(Identifier user) throws SQLException {
-        int newFailedAttempts = user.getFailedAttempts() + 1;
-        LocalDateTime lockoutUntil = newFailedAttempts >= 5 ? LocalDateTime.now().plusMinutes(15) : null;
-        IdentifierDAO.updateFailedAttempts(user.getEmail(), newFailedAttempts, lockoutUntil);
+    private void handleFailedLoginAttempt(Identifier user) {
+        // Counted in Redis; the identifier row is only updated (asynchronously) when a lockout triggers
+        LoginAttemptTracker.recordFailure(user.getEmail());
     }
 
     private void sendOTP(String email) {
@@ -197,12 +199,8 @@ public class AuthenticationService {
         RedisCacheService.storeOTP(email, otp);
         System.out.println("Generated OTP: " + otp);
 
-        try {
-            EmailUtility.sendOTP(email, otp);
-            System.out.println("OTP sent to " + email);
-        } catch (Exception e) {
-            System.out.println("Error sending OTP: " + e.getMessage());
-        }
+        // Delivered by the mail workers; the request does not wait on SMTP
+        EmailUtility.enqueueOTP(email, otp);
     }
 
     private boolean verifyOTP(String email, String enteredOTP) throws SQLException {
@@ -215,11 +213,18 @@ public class AuthenticationService {
 
     // ========== Public Utils ==========
     public boolean emailExists(String email) throws SQLException {
-        return IdentifierDAO.getIdentifierByEmail(email) != null;
+        return findByEmail(email) != null;
     }
 
+    // Definite misses are answered by the email filter / negative cache without a DB round trip
     public Identifier findByEmail(String email) throws SQLException {
-        return IdentifierDAO.getIdentifierByEmail(email);
+        if (!EmailDirectory.mightExist(email)) return null;
+
+        Identifier user = IdentifierDAO.getIdentifierByEmail(email);
+        if (user == null) {
+            EmailDirectory.recordAbsent(email);
+        }
+        return user;
     }
 
     public boolean isAccountSoftDeleted(String accountId) throws SQLException {
@@ -228,8 +233,12 @@ public class AuthenticationService {
     
     public boolean isWithinReactivationPeriod(String accountId) throws SQLException {
         Optional<LocalDateTime> deletedAt = AccountDAO.getDeletedAccountDeletedAt(accountId);
-        if (deletedAt.isPresent()) {
-            LocalDateTime reactivationDeadline = deletedAt.get().plusDays(30);
+        return isWithinReactivationPeriod(deletedAt.orElse(null));
+    }
+
+    private boolean isWithinReactivationPeriod(LocalDateTime deletedAt) {
+        if (deletedAt != null) {
+            LocalDateTime reactivationDeadline = deletedAt.plusDays(30);
             return LocalDateTime.now().isBefore(reactivationDeadline);
         }
         return false;
@@ -2,8 +2,6 @@ package com.vifinancenews.auth.services;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken.Payload;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import io.github.cdimascio.dotenv.Dotenv;
@@ -11,13 +9,27 @@ import io.github.cdimascio.dotenv.Dotenv;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.PublicKey;
 import java.util.Collections;
+import java.util.List;
 
 public class GoogleAuthService {
 
     private static final Dotenv dotenv = Dotenv.load();
     private static final String CLIENT_ID = dotenv.get("GOOGLE_CLIENT_ID");
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final List<String> ISSUERS = List.of("accounts.google.com", "https://accounts.google.com");
+    private static final long CLOCK_SKEW_SECONDS = 300;
+
+    // Shared across calls so the fetched keys stay cached; replaceable for offline benchmarks
+    private static volatile GooglePublicKeySource keySource;
+
+    /**
+     * Replaces the source of signing keys, e.g. with locally generated keys for offline benchmarks.
+     */
+    public static void setKeySource(GooglePublicKeySource source) {
+        keySource = source;
+    }
 
     /**
      * Verifies the Google ID token and retrieves the email if the token is valid.
@@ -27,25 +39,16 @@ public class GoogleAuthService {
      */
     public static String getEmailFromIdToken(String idTokenString) {
         try {
-            // Create the GoogleIdTokenVerifier with the client ID for validation.
-            GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(
-                    GoogleNetHttpTransport.newTrustedTransport(),
-                    JSON_FACTORY
-            )
-            .setAudience(Collections.singletonList(CLIENT_ID)) // Ensure the token is meant for our client.
-            .build();
-
             // Verify the token and extract the payload.
-            GoogleIdToken idToken = verifier.verify(idTokenString);
-            if (idToken != null) {
-                Payload payload = idToken.getPayload();
+            Payload payload = verify(idTokenString);
+            if (payload != null) {
                 return payload.getEmail(); // Return the email if the token is valid.
             } else {
                 // Token verification failed.
                 System.err.println("Invalid ID token.");
                 return null;
             }
-        } catch (GeneralSecurityException | IOException e) {
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
             // Log any errors that occur during token verification.
             e.printStackTrace();
             return null;
@@ -60,16 +63,8 @@ public class GoogleAuthService {
      */
     public static UserDetails getUserDetailsFromIdToken(String idTokenString) {
         try {
-            GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(
-                    GoogleNetHttpTransport.newTrustedTransport(),
-                    JSON_FACTORY
-            )
-            .setAudience(Collections.singletonList(CLIENT_ID))
-            .build();
-
-            GoogleIdToken idToken = verifier.verify(idTokenString);
-            if (idToken != null) {
-                Payload payload = idToken.getPayload();
+            Payload payload = verify(idTokenString);
+            if (payload != null) {
                 String email = payload.getEmail();
                 String name = (String) payload.get("name");
                 // Ensure the name is encoded correctly
@@ -81,11 +76,47 @@ public class GoogleAuthService {
                 System.err.println("Invalid ID token.");
                 return null;
             }
-        } catch (GeneralSecurityException | IOException e) {
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
             e.printStackTrace();
             return null;
         }
     }
+
+    /**
+     * Checks the token's claims (audience, issuer, expiry) and its signature against the cached keys.
+     *
+     * @return the verified payload, or null if the token is not valid for this client
+     */
+    public static Payload verify(String idTokenString) throws GeneralSecurityException, IOException {
+        GoogleIdToken idToken = GoogleIdToken.parse(JSON_FACTORY, idTokenString);
+
+        // Cheap claim checks first, so obviously bad tokens never reach the signature check
+        if (!idToken.verifyAudience(Collections.singletonList(CLIENT_ID))
+                || !idToken.verifyIssuer(ISSUERS)
+                || !idToken.verifyTime(System.currentTimeMillis(), CLOCK_SKEW_SECONDS)) {
+            return null;
+        }
+
+        for (PublicKey publicKey : keySource().getPublicKeys()) {
+            if (idToken.verifySignature(publicKey)) {
+                return idToken.getPayload();
+            }
+        }
+        return null;
+    }
+
+    private static GooglePublicKeySource keySource() throws GeneralSecurityException, IOException {
+        GooglePublicKeySource source = keySource;
+        if (source == null) {
+            synchronized (GoogleAuthService.class) {
+                if (keySource == null) {
+                    keySource = new GoogleCertsKeySource(JSON_FACTORY);
+                }
+                source = keySource;
+            }
+        }
+        return source;
+    }
     
     // Custom UserDetails class to hold user information.
     public static class UserDetails {
@@ -0,0 +1,55 @@
+package com.vifinancenews.auth.services;
+
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Google's public signing keys, fetched once over a shared transport and cached for the
+ * Cache-Control max-age of the certs response. A background thread refreshes them shortly
+ * before they expire so request threads never wait on the fetch.
+ */
+public class GoogleCertsKeySource implements GooglePublicKeySource {
+
+    private static final long REFRESH_AHEAD_MS = 60_000;   // refresh one minute before expiry
+    private static final long MIN_REFRESH_DELAY_MS = 30_000;
+
+    private final GooglePublicKeysManager keysManager;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "google-certs-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GoogleCertsKeySource(JsonFactory jsonFactory) throws GeneralSecurityException, IOException {
+        this.keysManager = new GooglePublicKeysManager(GoogleNetHttpTransport.newTrustedTransport(), jsonFactory);
+        refresher.execute(this::refreshAndReschedule);
+    }
+
+    @Override
+    public List<PublicKey> getPublicKeys() throws GeneralSecurityException, IOException {
+        // Thread-safe; only fetches if the background refresh has fallen behind
+        return keysManager.getPublicKeys();
+    }
+
+    private void refreshAndReschedule() {
+        long delay = MIN_REFRESH_DELAY_MS;
+        try {
+            keysManager.refresh();
+            long expiresIn = keysManager.getExpirationTimeMilliseconds() - System.currentTimeMillis();
+            delay = Math.max(MIN_REFRESH_DELAY_MS, expiresIn - REFRESH_AHEAD_MS);
+            System.out.println("Google public keys refreshed, next refresh in " + (delay / 1000) + " s");
+        } catch (GeneralSecurityException | IOException e) {
+            System.err.println("Error refreshing Google public keys: " + e.getMessage());
+        }
+        refresher.schedule(this::refreshAndReschedule, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,16 @@
+package com.vifinancenews.auth.services;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.List;
+
+/**
+ * Supplies the public keys used to check Google ID token signatures.
+ * The default source fetches Google's certs; benchmarks and tests can plug in locally generated keys.
+ */
+@FunctionalInterface
+public interface GooglePublicKeySource {
+
+    List<PublicKey> getPublicKeys() throws GeneralSecurityException, IOException;
+}
@@ -0,0 +1,25 @@
+package com.vifinancenews.common.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import io.javalin.Javalin;
+
+/**
+ * Separate Javalin instance for the /api/internal/* stats routes.
+ * It binds to ADMIN_HOST (default loopback) on its own port, has no CORS headers, and so is
+ * unreachable from the public port and from browsers on other origins.
+ */
+public class AdminServer {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private static final String ADMIN_HOST = dotenv.get("ADMIN_HOST", "127.0.0.1");
+
+    /**
+     * @param defaultPort port used when ADMIN_PORT is not set
+     */
+    public static Javalin start(int defaultPort) {
+        int port = Integer.parseInt(dotenv.get("ADMIN_PORT", String.valueOf(defaultPort)));
+        Javalin admin = Javalin.create(config -> config.showJavalinBanner = false).start(ADMIN_HOST, port);
+        System.out.println("Admin endpoints on http://" + ADMIN_HOST + ":" + port + "/api/internal/");
+        return admin;
+    }
+}
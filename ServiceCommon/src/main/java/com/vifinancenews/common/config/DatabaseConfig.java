@@ -1,10 +1,13 @@
 package com.vifinancenews.common.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import io.github.cdimascio.dotenv.Dotenv;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DatabaseConfig {
     private static final Dotenv dotenv = Dotenv.load();
@@ -15,29 +18,104 @@ public class DatabaseConfig {
     private static final String USER = dotenv.get("DB_USER");
     private static final String PASSWORD = dotenv.get("DB_PASSWORD");
 
+    // Pool sizing (override per replica through .env)
+    private static final int POOL_MIN_IDLE = intEnv("DB_POOL_MIN_IDLE", 2);
+    private static final int POOL_MAX_SIZE = intEnv("DB_POOL_MAX_SIZE", 10);
+    private static final long POOL_IDLE_TIMEOUT_MS = longEnv("DB_POOL_IDLE_TIMEOUT_MS", 300_000L);     // 5 minutes
+    private static final long POOL_MAX_LIFETIME_MS = longEnv("DB_POOL_MAX_LIFETIME_MS", 1_800_000L);   // 30 minutes
+    private static final long POOL_BORROW_TIMEOUT_MS = longEnv("DB_POOL_BORROW_TIMEOUT_MS", 5_000L);   // 5 seconds
+    private static final long POOL_VALIDATION_TIMEOUT_MS = longEnv("DB_POOL_VALIDATION_TIMEOUT_MS", 2_000L);
+
     // Build the connection URL for CockroachDB
     private static final String URL = String.format(
             "jdbc:postgresql://%s:%s/%s?sslmode=require", HOST, PORT, DATABASE
     );
 
+    private static final HikariDataSource dataSource = createDataSource();
+
+    // Borrow latency counters (time spent waiting on the pool in getConnection)
+    private static final LongAdder borrowCount = new LongAdder();
+    private static final LongAdder borrowTimeNanos = new LongAdder();
+    private static final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    private static HikariDataSource createDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("cockroach-pool");
+        config.setDriverClassName("org.postgresql.Driver");
+        config.setJdbcUrl(URL);
+        config.setUsername(USER);
+        config.setPassword(PASSWORD);
+        config.addDataSourceProperty("ssl", "true");
+        config.addDataSourceProperty("sslmode", "require");
+        config.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
+
+        config.setMinimumIdle(POOL_MIN_IDLE);
+        config.setMaximumPoolSize(POOL_MAX_SIZE);
+        config.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+        config.setMaxLifetime(POOL_MAX_LIFETIME_MS);
+        config.setConnectionTimeout(POOL_BORROW_TIMEOUT_MS);
+        config.setValidationTimeout(POOL_VALIDATION_TIMEOUT_MS);
+        config.setKeepaliveTime(Math.min(POOL_IDLE_TIMEOUT_MS, 120_000L));
+        config.setRegisterMbeans(true);
+
+        return new HikariDataSource(config);
+    }
+
     public static Connection getConnection() throws SQLException {
-        Properties properties = new Properties();
-        properties.setProperty("user", USER);
-        properties.setProperty("password", PASSWORD);
-        properties.setProperty("ssl", "true");
-        properties.setProperty("sslmode", "require");
-    
+        long start = System.nanoTime();
         try {
-            Class.forName("org.postgresql.Driver");
-            Connection conn = DriverManager.getConnection(URL, properties);
-            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-            return conn;
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("CockroachDB JDBC driver not found", e);
+            return dataSource.getConnection();
         } catch (SQLException e) {
             System.err.println("Error while connecting to database: " + e.getMessage());
             throw e; // Rethrow after logging
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            borrowCount.increment();
+            borrowTimeNanos.add(elapsed);
+            maxBorrowNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    public static PoolStats getPoolStats() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        long borrows = borrowCount.sum();
+        double avgBorrowMs = borrows == 0 ? 0.0 : (borrowTimeNanos.sum() / (double) borrows) / 1_000_000.0;
+        double maxBorrowMs = maxBorrowNanos.get() / 1_000_000.0;
+
+        return new PoolStats(
+                pool != null ? pool.getActiveConnections() : 0,
+                pool != null ? pool.getIdleConnections() : 0,
+                pool != null ? pool.getTotalConnections() : 0,
+                pool != null ? pool.getThreadsAwaitingConnection() : 0,
+                POOL_MAX_SIZE,
+                borrows,
+                avgBorrowMs,
+                maxBorrowMs
+        );
+    }
+
+    public static void shutdown() {
+        dataSource.close();
+        System.out.println("Database pool closed.");
+    }
+
+    public static record PoolStats(int active, int idle, int total, int waiters, int maxSize,
+                                   long borrowCount, double avgBorrowMs, double maxBorrowMs) {}
+
+    // === ENV HELPERS ===
+
+    private static int intEnv(String key, int defaultValue) {
+        return (int) longEnv(key, defaultValue);
+    }
+
+    private static long longEnv(String key, long defaultValue) {
+        String value = dotenv.get(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using default " + defaultValue);
+            return defaultValue;
         }
     }
-    
 }
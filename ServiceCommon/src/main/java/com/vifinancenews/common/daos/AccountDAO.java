@@ -15,37 +15,16 @@ import java.util.UUID;
 
 public class AccountDAO {
 
-    // Method to insert a new account
-    public static Account insertAccount(UUID identifierId, String userName, String avatarLink, String bio) throws SQLException {
-        String hashedId = IDHash.hashUUID(identifierId);
-
-        // Use ? placeholders for prepared statement
-        String query = "INSERT INTO account (user_id, username, avatar_link, bio) VALUES (?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, hashedId);      // user_id (hashedId)
-            pstmt.setString(2, userName);      // username
-            pstmt.setString(3, avatarLink);    // avatar_link (can be null)
-            pstmt.setString(4, bio);           // bio
-
-            int rowsInserted = pstmt.executeUpdate();
-            System.out.println("Rows inserted into account: " + rowsInserted);
-            if (rowsInserted > 0) {
-                return new Account(hashedId, userName, avatarLink, bio);
-            }
-        }
-        return null;
-    }
+    // SQL is kept in package-private constants so QueryPlanCheck explains exactly what runs here.
+    // %s slots in the saved-article listings take ReadConsistency.asOfClause() and the keyset filter.
+    static final String SELECT_ACCOUNT_SQL = "SELECT user_id, username, avatar_link, bio FROM account WHERE user_id = ?";
 
     // Method to get an account by user ID
     public static Account getAccountByUserId(UUID userId) throws SQLException {
         String hashedUserId = IDHash.hashUUID(userId);
-        String query = "SELECT user_id, username, avatar_link, bio FROM account WHERE user_id = ?";
 
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+             PreparedStatement stmt = conn.prepareStatement(SELECT_ACCOUNT_SQL)) {
             stmt.setString(1, hashedUserId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -63,10 +42,8 @@ public class AccountDAO {
 
     // Method to get an account by account ID
     public static Account getAccountByAccountId(String accountId) throws SQLException {
-        String query = "SELECT user_id, username, avatar_link, bio FROM account WHERE user_id = ?";
-
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_ACCOUNT_SQL)) {
 
             pstmt.setString(1, accountId);
             ResultSet rs = pstmt.executeQuery();
@@ -84,41 +61,35 @@ public class AccountDAO {
         return null;
     }
 
+    static final String COPY_ACCOUNT_TO_DELETED_SQL =
+            "INSERT INTO deleted_accounts (user_id, username, avatar_link, bio, deleted_at) " +
+            "SELECT user_id, username, avatar_link, bio, NOW() FROM account WHERE user_id = ?";
+    static final String DELETE_ACCOUNT_SQL = "DELETE FROM account WHERE user_id = ?";
+
     // Method to move an account to the deleted_accounts table (soft delete)
     public static boolean moveAccountToDeleted(String userId) throws SQLException {
-        String insertQuery = "INSERT INTO deleted_accounts (user_id, username, avatar_link, bio, deleted_at) " +
-                             "SELECT user_id, username, avatar_link, bio, NOW() FROM account WHERE user_id = ?";
-        String deleteQuery = "DELETE FROM account WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            conn.setAutoCommit(false);
-
-            try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery);
-                 PreparedStatement deleteStmt = conn.prepareStatement(deleteQuery)) {
+        // Commits only if both statements touched the row; retried on 40001 via the savepoint protocol
+        return TransactionExecutor.execute("moveAccountToDeleted", conn -> {
+            try (PreparedStatement insertStmt = conn.prepareStatement(COPY_ACCOUNT_TO_DELETED_SQL);
+                 PreparedStatement deleteStmt = conn.prepareStatement(DELETE_ACCOUNT_SQL)) {
 
                 insertStmt.setString(1, userId);
                 deleteStmt.setString(1, userId);
 
                 int inserted = insertStmt.executeUpdate();
                 int deleted = deleteStmt.executeUpdate();
-
-                if (inserted > 0 && deleted > 0) {
-                    conn.commit();
-                    return true;
-                } else {
-                    conn.rollback();
-                    return false;
-                }
+                return inserted > 0 && deleted > 0;
             }
-        }
+        }, moved -> moved);
     }
 
+    static final String SELECT_DELETED_ACCOUNT_SQL = "SELECT * FROM deleted_accounts WHERE user_id = ?";
+
     public static Account getDeletedAccountByUserId(UUID identifierId) throws SQLException {
         String hashedId = IDHash.hashUUID(identifierId);
-        String query = "SELECT * FROM deleted_accounts WHERE user_id = ?";
-        
+
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_DELETED_ACCOUNT_SQL)) {
 
             pstmt.setString(1, hashedId);
             ResultSet rs = pstmt.executeQuery();
@@ -137,53 +108,46 @@ public class AccountDAO {
     }
     
 
+    static final String COUNT_DELETED_ACCOUNT_SQL = "SELECT COUNT(*) FROM deleted_accounts WHERE user_id = ?";
+
     // Method to check if an account is in the deleted_accounts table
     public static boolean isAccountInDeleted(String userId) throws SQLException {
-        String query = "SELECT COUNT(*) FROM deleted_accounts WHERE user_id = ?";
-
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(COUNT_DELETED_ACCOUNT_SQL)) {
             pstmt.setString(1, userId);
             ResultSet rs = pstmt.executeQuery();
             return rs.next() && rs.getInt(1) > 0;
         }
     }
 
+    static final String RESTORE_ACCOUNT_SQL =
+            "INSERT INTO account (user_id, username, avatar_link, bio) " +
+            "SELECT user_id, username, avatar_link, bio FROM deleted_accounts WHERE user_id = ?";
+    static final String DELETE_DELETED_ACCOUNT_SQL = "DELETE FROM deleted_accounts WHERE user_id = ?";
+
     // Method to restore a deleted account
     public static boolean restoreUserById(String userId) throws SQLException {
-        String restoreQuery = "INSERT INTO account (user_id, username, avatar_link, bio) " +
-                              "SELECT user_id, username, avatar_link, bio FROM deleted_accounts WHERE user_id = ?";
-        String deleteQuery = "DELETE FROM deleted_accounts WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            conn.setAutoCommit(false);
-
-            try (PreparedStatement restoreStmt = conn.prepareStatement(restoreQuery);
-                 PreparedStatement deleteStmt = conn.prepareStatement(deleteQuery)) {
+        // Commits only if both statements touched the row; retried on 40001 via the savepoint protocol
+        return TransactionExecutor.execute("restoreUserById", conn -> {
+            try (PreparedStatement restoreStmt = conn.prepareStatement(RESTORE_ACCOUNT_SQL);
+                 PreparedStatement deleteStmt = conn.prepareStatement(DELETE_DELETED_ACCOUNT_SQL)) {
 
                 restoreStmt.setString(1, userId);
                 deleteStmt.setString(1, userId);
 
                 int restored = restoreStmt.executeUpdate();
                 int deleted = deleteStmt.executeUpdate();
-
-                if (restored > 0 && deleted > 0) {
-                    conn.commit();
-                    return true;
-                } else {
-                    conn.rollback();
-                    return false;
-                }
+                return restored > 0 && deleted > 0;
             }
-        }
+        }, restored -> restored);
     }
 
+    static final String SELECT_DELETED_AT_SQL = "SELECT deleted_at FROM deleted_accounts WHERE user_id = ?";
+
     // Method to get the deleted_at timestamp of a deleted account
     public static Optional<LocalDateTime> getDeletedAccountDeletedAt(String userId) throws SQLException {
-        String query = "SELECT deleted_at FROM deleted_accounts WHERE user_id = ?";
-
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_DELETED_AT_SQL)) {
 
             pstmt.setString(1, userId);
             ResultSet rs = pstmt.executeQuery();
@@ -196,128 +160,211 @@ public class AccountDAO {
         }
     }
 
+    static final String DELETE_EXPIRED_DELETED_ACCOUNTS_SQL =
+            "DELETE FROM deleted_accounts WHERE deleted_at < NOW() - (? * INTERVAL '1 day')";
+
     // Method to delete expired deleted accounts
     public static boolean deleteExpiredDeletedAccounts(int days) throws SQLException {
-    String query = "DELETE FROM deleted_accounts WHERE deleted_at < NOW() - INTERVAL '" + days + " days'";
+        return TransactionExecutor.executeStatement("deleteExpiredDeletedAccounts", conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(DELETE_EXPIRED_DELETED_ACCOUNTS_SQL)) {
+                stmt.setInt(1, days);
+                return stmt.executeUpdate() > 0;
+            }
+        });
+    }
 
-    try (Connection conn = DatabaseConfig.getConnection();
-         PreparedStatement stmt = conn.prepareStatement(query)) {
+    // One incremental purge step: rows examined, rows removed and the newest deleted_at in the batch
+    public static record PurgeBatch(int scanned, int deleted, LocalDateTime lastDeletedAt) {}
+
+    static final String PURGE_EXPIRED_ACCOUNTS_BATCH_SQL = """
+            WITH batch AS (
+                SELECT user_id, deleted_at FROM deleted_accounts
+                WHERE deleted_at >= ? AND deleted_at < NOW() - (? * INTERVAL '1 day')
+                ORDER BY deleted_at
+                LIMIT ?
+            ),
+            deleted_identifiers AS (
+                DELETE FROM identifier WHERE id_hash IN (SELECT user_id FROM batch) RETURNING id
+            ),
+            deleted_rows AS (
+                DELETE FROM deleted_accounts WHERE user_id IN (SELECT user_id FROM batch) RETURNING user_id
+            )
+            SELECT (SELECT COUNT(*) FROM batch) AS scanned,
+                   (SELECT COUNT(*) FROM deleted_rows) AS deleted,
+                   (SELECT COUNT(*) FROM deleted_identifiers) AS identifiers_deleted,
+                   (SELECT MAX(deleted_at) FROM batch) AS last_deleted_at
+        """;
+
+    // Permanently removes up to `limit` expired deleted accounts (and their identifiers) with
+    // deleted_at >= checkpoint, oldest first, in a single statement.
+    public static PurgeBatch purgeExpiredAccountsBatch(int days, LocalDateTime checkpoint, int limit) throws SQLException {
+        return TransactionExecutor.executeStatement("purgeExpiredAccountsBatch", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(PURGE_EXPIRED_ACCOUNTS_BATCH_SQL)) {
+                pstmt.setTimestamp(1, Timestamp.valueOf(checkpoint != null ? checkpoint : LocalDateTime.of(1970, 1, 1, 0, 0)));
+                pstmt.setInt(2, days);
+                pstmt.setInt(3, limit);
 
-        return stmt.executeUpdate() > 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        Timestamp last = rs.getTimestamp("last_deleted_at");
+                        return new PurgeBatch(rs.getInt("scanned"), rs.getInt("deleted"),
+                                last != null ? last.toLocalDateTime() : checkpoint);
+                    }
+                }
+            }
+            return new PurgeBatch(0, 0, checkpoint);
+        });
     }
-}
-
 
     // Method to delete an account from the deleted_accounts table
     public static boolean deleteFromDeletedAccounts(String userId) throws SQLException {
-        String query = "DELETE FROM deleted_accounts WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, userId);
-            return pstmt.executeUpdate() > 0;
-        }
+        return TransactionExecutor.executeStatement("deleteFromDeletedAccounts", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(DELETE_DELETED_ACCOUNT_SQL)) {
+                pstmt.setString(1, userId);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
     }
 
-    // Method to update username and bio together
-    public static boolean updateUsernameAndBio(String userId, String userName, String bio) throws SQLException {
-        List<String> updates = new ArrayList<>();
-        List<Object> params = new ArrayList<>();
+    static final String UPDATE_USERNAME_AND_BIO_SQL = """
+            UPDATE account SET username = COALESCE(?, username), bio = COALESCE(?, bio)
+            WHERE user_id = ?
+            RETURNING user_id, username, avatar_link, bio
+        """;
 
-        if (userName != null) {
-            updates.add("username = ?");
-            params.add(userName);
-        }
-        if (bio != null) {
-            updates.add("bio = ?");
-            params.add(bio);
+    // Updates username and/or bio and returns the updated row in the same round trip (null if nothing changed)
+    public static Account updateUsernameAndBioReturning(String userId, String userName, String bio) throws SQLException {
+        if (userName == null && bio == null) {
+            return null;
         }
 
-        // If nothing to update, return false
-        if (updates.isEmpty()) {
-            return false;
-        }
-
-        String query = "UPDATE account SET " + String.join(", ", updates) + " WHERE user_id = ?";
+        return TransactionExecutor.executeStatement("updateUsernameAndBio", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_USERNAME_AND_BIO_SQL)) {
+                pstmt.setString(1, userName);
+                pstmt.setString(2, bio);
+                pstmt.setString(3, userId);
+                return readReturnedAccount(pstmt);
+            }
+        });
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+    static final String UPDATE_AVATAR_SQL =
+            "UPDATE account SET avatar_link = ? WHERE user_id = ? RETURNING user_id, username, avatar_link, bio";
 
-            int index = 1;
-            for (Object param : params) {
-                pstmt.setObject(index++, param);
+    // Updates the avatar link and returns the updated row in the same round trip (null if no such account)
+    public static Account updateAvatarReturning(String userId, String avatarLink) throws SQLException {
+        return TransactionExecutor.executeStatement("updateAvatar", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_AVATAR_SQL)) {
+                pstmt.setString(1, avatarLink);
+                pstmt.setString(2, userId);
+                return readReturnedAccount(pstmt);
             }
-            pstmt.setString(index, userId);
+        });
+    }
 
-            return pstmt.executeUpdate() > 0;
+    private static Account readReturnedAccount(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                return new Account(
+                    rs.getString("user_id"),
+                    rs.getString("username"),
+                    rs.getString("avatar_link"),
+                    rs.getString("bio")
+                );
+            }
         }
+        return null;
     }
 
-    // Method to update avatar link
-    public static boolean updateAvatar(String userId, String avatarLink) throws SQLException {
-        String query = "UPDATE account SET avatar_link = ? WHERE user_id = ?";
+    static final String SAVED_ARTICLES_PAGE_SQL = """
+            SELECT a.article_id, a.saved_at, ar.title, ar.url
+            FROM account_article a
+            JOIN article ar ON a.article_id = ar.article_id
+            %s
+            WHERE a.user_id = ?
+            ORDER BY a.saved_at DESC, a.article_id DESC
+            LIMIT ? OFFSET ?
+        """;
+
+    // Page-number listing without the total count; the caller resolves the count separately
+    public static List<Map<String, Object>> getSavedArticlesPage(String userId, int page, int pageSize,
+                                                                 ReadConsistency consistency) throws SQLException {
+        String query = SAVED_ARTICLES_PAGE_SQL.formatted(consistency.asOfClause());
 
+        List<Map<String, Object>> articles = new ArrayList<>();
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, avatarLink);
-            pstmt.setString(2, userId);
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, pageSize);
+            pstmt.setInt(3, (page - 1) * pageSize);
 
-            return pstmt.executeUpdate() > 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    articles.add(mapSavedArticle(rs));
+                }
+            }
         }
+        return articles;
     }
 
-    public static Map<String, Object> getSavedArticles(String userId, int page, int pageSize) {
-        List<Map<String, Object>> articles = new ArrayList<>();
-        int totalCount = 0;
-
-        String dataQuery = """
-                SELECT a.article_id, a.saved_at, ar.title, ar.url
-                FROM account_article a
-                JOIN article ar ON a.article_id = ar.article_id
-                WHERE a.user_id = ?
-                ORDER BY a.saved_at DESC
-                LIMIT ? OFFSET ?
-            """;
-
-        String countQuery = "SELECT COUNT(*) FROM account_article WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            // Fetch articles
-            try (PreparedStatement pstmt = conn.prepareStatement(dataQuery)) {
-                int offset = (page - 1) * pageSize;
-                pstmt.setString(1, userId);
-                pstmt.setInt(2, pageSize);
-                pstmt.setInt(3, offset);
+    static final String SAVED_ARTICLES_AFTER_SQL = """
+            SELECT a.article_id, a.saved_at, ar.title, ar.url
+            FROM account_article a
+            JOIN article ar ON a.article_id = ar.article_id
+            %s
+            WHERE a.user_id = ? %s
+            ORDER BY a.saved_at DESC, a.article_id DESC
+            LIMIT ?
+        """;
+    static final String SAVED_ARTICLES_KEYSET_FILTER = "AND (a.saved_at, a.article_id) < (?, ?)";
+
+    // Keyset listing: articles strictly older than (savedAt, articleId), newest first.
+    // Pass null savedAt/articleId for the first page.
+    public static List<Map<String, Object>> getSavedArticlesAfter(String userId, LocalDateTime savedAt, String articleId, int limit,
+                                                                  ReadConsistency consistency) throws SQLException {
+        boolean firstPage = savedAt == null || articleId == null;
+        String keysetFilter = firstPage ? "" : SAVED_ARTICLES_KEYSET_FILTER;
+        String query = SAVED_ARTICLES_AFTER_SQL.formatted(consistency.asOfClause(), keysetFilter);
 
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    while (rs.next()) {
-                        Map<String, Object> article = new HashMap<>();
-                        article.put("articleId", rs.getString("article_id"));
-                        article.put("savedAt", rs.getTimestamp("saved_at").toLocalDateTime());
-                        article.put("title", rs.getString("title"));
-                        article.put("url", rs.getString("url"));
-                        articles.add(article);
-                    }
-                }
+        List<Map<String, Object>> articles = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            int index = 1;
+            pstmt.setString(index++, userId);
+            if (!firstPage) {
+                pstmt.setTimestamp(index++, Timestamp.valueOf(savedAt));
+                pstmt.setString(index++, articleId);
             }
+            pstmt.setInt(index, limit);
 
-            // Fetch total count
-            try (PreparedStatement pstmt = conn.prepareStatement(countQuery)) {
-                pstmt.setString(1, userId);
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    if (rs.next()) {
-                        totalCount = rs.getInt(1);
-                    }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    articles.add(mapSavedArticle(rs));
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+        return articles;
+    }
+
+    static final String COUNT_SAVED_ARTICLES_SQL = "SELECT COUNT(*) FROM account_article WHERE user_id = ?";
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("articles", articles);
-        result.put("totalCount", totalCount);
-        return result;
+    public static int countSavedArticles(String userId) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(COUNT_SAVED_ARTICLES_SQL)) {
+            pstmt.setString(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
         }
+    }
+
+    private static Map<String, Object> mapSavedArticle(ResultSet rs) throws SQLException {
+        Map<String, Object> article = new HashMap<>();
+        article.put("articleId", rs.getString("article_id"));
+        article.put("savedAt", rs.getTimestamp("saved_at").toLocalDateTime());
+        article.put("title", rs.getString("title"));
+        article.put("url", rs.getString("url"));
+        return article;
+    }
 
 }
@@ -1,219 +1,348 @@
 package com.vifinancenews.common.daos;
 
 import com.vifinancenews.common.config.DatabaseConfig;
+import com.vifinancenews.common.models.Account;
 import com.vifinancenews.common.models.Identifier;
+import com.vifinancenews.common.models.PurgeStats;
 import com.vifinancenews.common.utilities.IDHash;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
 
 public class IdentifierDAO {
 
+    private static final int PURGE_CHUNK_SIZE = 500;
+
+    // Identifier plus its active or soft-deleted account, resolved in one statement at login
+    public static record LoginResolution(Identifier identifier, Account account, boolean softDeleted, LocalDateTime deletedAt) {}
+
+    // Rows written by a registration
+    public static record Registration(Identifier identifier, Account account) {}
+
+    // SQL is kept in package-private constants so QueryPlanCheck explains exactly what runs here
+    static final String SELECT_IDENTIFIER_BY_EMAIL_SQL =
+            "SELECT id, email, password_hash, login_method, created_at, last_login, failed_attempts, lockout_until " +
+            "FROM identifier WHERE email = ?";
+
     public static Identifier getIdentifierByEmail(String email) throws SQLException {
-        String query = "SELECT id, email, password_hash, login_method, created_at, last_login, failed_attempts, lockout_until FROM identifier WHERE email = ?";
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_IDENTIFIER_BY_EMAIL_SQL)) {
 
             pstmt.setString(1, email);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Identifier(
-                        UUID.fromString(rs.getString("id")),
-                        rs.getString("email"),
-                        rs.getString("password_hash"),
-                        rs.getString("login_method"),
-                        rs.getTimestamp("created_at").toLocalDateTime(),
-                        rs.getTimestamp("last_login") != null ? rs.getTimestamp("last_login").toLocalDateTime() : null,
-                        rs.getInt("failed_attempts"),
-                        rs.getTimestamp("lockout_until") != null ? rs.getTimestamp("lockout_until").toLocalDateTime() : null
-                    );
+                return rs.next() ? mapIdentifier(rs) : null;
+            }
+        }
+    }
+
+    static final String EMAILS_FIRST_SQL = "SELECT email FROM identifier ORDER BY email LIMIT ?";
+    static final String EMAILS_AFTER_SQL = "SELECT email FROM identifier WHERE email > ? ORDER BY email LIMIT ?";
+
+    // Keyset scan over all registered emails in order; pass null to start from the beginning
+    public static List<String> getEmailsAfter(String afterEmail, int limit) throws SQLException {
+        String query = afterEmail == null ? EMAILS_FIRST_SQL : EMAILS_AFTER_SQL;
+        List<String> emails = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+            int index = 1;
+            if (afterEmail != null) {
+                pstmt.setString(index++, afterEmail);
+            }
+            pstmt.setInt(index, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    emails.add(rs.getString("email"));
                 }
             }
         }
-        return null;
+        return emails;
     }
 
+    static final String SELECT_IDENTIFIER_BY_ACCOUNT_ID_SQL = """
+        SELECT i.id, i.email, i.password_hash, i.login_method, i.created_at, i.last_login,
+               i.failed_attempts, i.lockout_until
+        FROM identifier i
+        JOIN account a ON i.id_hash = a.user_id
+        WHERE a.user_id = ?
+    """;
+
     public static Identifier getIdentifierByAccountId(String accountId) throws SQLException {
-        String query = """
-            SELECT i.id, i.email, i.password_hash, i.login_method, i.created_at, i.last_login,
-                   i.failed_attempts, i.lockout_until
-            FROM identifier i
-            JOIN account a ON i.id_hash = a.user_id
-            WHERE a.id = ?
-        """;
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_IDENTIFIER_BY_ACCOUNT_ID_SQL)) {
     
             pstmt.setString(1, accountId);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Identifier(
-                        UUID.fromString(rs.getString("id")),
-                        rs.getString("email"),
-                        rs.getString("password_hash"),
-                        rs.getString("login_method"),
-                        rs.getTimestamp("created_at").toLocalDateTime(),
-                        rs.getTimestamp("last_login") != null ? rs.getTimestamp("last_login").toLocalDateTime() : null,
-                        rs.getInt("failed_attempts"),
-                        rs.getTimestamp("lockout_until") != null ? rs.getTimestamp("lockout_until").toLocalDateTime() : null
-                    );
-                }
+                return rs.next() ? mapIdentifier(rs) : null;
             }
         }
-        return null;
     }
 
+    static final String RESOLVE_LOGIN_SQL = """
+        WITH i AS (
+            UPDATE identifier SET last_login = ?, failed_attempts = 0
+            WHERE email = ? AND lower(login_method) = lower(?)
+            RETURNING id, id_hash, email, password_hash, login_method, created_at, last_login,
+                      failed_attempts, lockout_until
+        )
+        SELECT i.id, i.email, i.password_hash, i.login_method, i.created_at, i.last_login,
+               i.failed_attempts, i.lockout_until,
+               a.user_id AS account_user_id, a.username AS account_username,
+               a.avatar_link AS account_avatar_link, a.bio AS account_bio,
+               d.user_id AS deleted_user_id, d.username AS deleted_username,
+               d.avatar_link AS deleted_avatar_link, d.bio AS deleted_bio, d.deleted_at
+        FROM i
+        LEFT JOIN account a ON a.user_id = i.id_hash
+        LEFT JOIN deleted_accounts d ON d.user_id = i.id_hash
+    """;
+
+    // Marks a successful login and resolves the identifier, its account and deleted_at in a single round trip
+    public static LoginResolution resolveLogin(String email, String loginMethod) throws SQLException {
+        // Retried on 40001: the last_login write contends with lockout writes on the same row
+        return TransactionExecutor.executeStatement("resolveLogin", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(RESOLVE_LOGIN_SQL)) {
+                pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.setString(2, email);
+                pstmt.setString(3, loginMethod);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+
+                    Identifier identifier = mapIdentifier(rs);
+                    boolean softDeleted = rs.getString("deleted_user_id") != null;
+
+                    Account account = null;
+                    if (rs.getString("account_user_id") != null) {
+                        account = new Account(
+                            rs.getString("account_user_id"),
+                            rs.getString("account_username"),
+                            rs.getString("account_avatar_link"),
+                            rs.getString("account_bio")
+                        );
+                    } else if (softDeleted) {
+                        account = new Account(
+                            rs.getString("deleted_user_id"),
+                            rs.getString("deleted_username"),
+                            rs.getString("deleted_avatar_link"),
+                            rs.getString("deleted_bio")
+                        );
+                    }
+
+                    Timestamp deletedAt = rs.getTimestamp("deleted_at");
+                    return new LoginResolution(identifier, account, softDeleted,
+                            deletedAt != null ? deletedAt.toLocalDateTime() : null);
+                }
+            }
+        });
+    }
+
+    static final String UPDATE_FAILED_ATTEMPTS_SQL =
+            "UPDATE identifier SET failed_attempts = ?, lockout_until = ? WHERE email = ?";
+
+    // Contends with resolveLogin's last_login write on the same row, so 40001 is retried
     public static void updateFailedAttempts(String email, int failedAttempts, LocalDateTime lockoutUntil) throws SQLException {
-        String query = "UPDATE identifier SET failed_attempts = ?, lockout_until = ? WHERE email = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, failedAttempts);
-            pstmt.setTimestamp(2, lockoutUntil != null ? Timestamp.valueOf(lockoutUntil) : null);
-            pstmt.setString(3, email);
-            pstmt.executeUpdate();
-        }
+        TransactionExecutor.executeStatement("updateFailedAttempts", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_FAILED_ATTEMPTS_SQL)) {
+                pstmt.setInt(1, failedAttempts);
+                pstmt.setTimestamp(2, lockoutUntil != null ? Timestamp.valueOf(lockoutUntil) : null);
+                pstmt.setString(3, email);
+                return pstmt.executeUpdate();
+            }
+        });
     }
 
+    static final String UPDATE_LAST_LOGIN_SQL =
+            "UPDATE identifier SET last_login = ?, failed_attempts = 0 WHERE email = ?";
+
     public static void updateLastLogin(String email) throws SQLException {
-        String query = "UPDATE identifier SET last_login = ?, failed_attempts = 0 WHERE email = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            pstmt.setString(2, email);
-            pstmt.executeUpdate();
-        }
+        TransactionExecutor.executeStatement("updateLastLogin", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_LAST_LOGIN_SQL)) {
+                pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.setString(2, email);
+                return pstmt.executeUpdate();
+            }
+        });
     }
 
+    static final String RESET_FAILED_ATTEMPTS_SQL = "UPDATE identifier SET failed_attempts = 0 WHERE email = ?";
+
     public static void resetFailedAttempts(String email) throws SQLException {
-        String query = "UPDATE identifier SET failed_attempts = 0 WHERE email = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, email);
-            pstmt.executeUpdate();
-        }
+        TransactionExecutor.executeStatement("resetFailedAttempts", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(RESET_FAILED_ATTEMPTS_SQL)) {
+                pstmt.setString(1, email);
+                return pstmt.executeUpdate();
+            }
+        });
     }
 
-    public static Identifier insertIdentifier(String email, String passwordHash, String loginMethod) throws SQLException {
+    static final String REGISTER_SQL = """
+        WITH new_identifier AS (
+            INSERT INTO identifier (id, email, password_hash, login_method, created_at, last_login, failed_attempts, lockout_until)
+            VALUES (?, ?, ?, ?, ?, NULL, 0, NULL)
+            RETURNING id
+        )
+        INSERT INTO account (user_id, username, avatar_link, bio)
+        SELECT ?, ?, ?, ? FROM new_identifier
+    """;
+
+    /**
+     * Inserts the identifier and its account as one statement: a mutating CTE runs as a single implicit
+     * transaction on one connection, so there is one round trip, one commit and no orphan identifier.
+     * Serialization failures (40001) are retried by TransactionExecutor.
+     */
+    public static Registration registerIdentifierWithAccount(String email, String passwordHash, String loginMethod,
+                                                            String userName, String avatarLink, String bio) throws SQLException {
         UUID userId = UUID.randomUUID(); // UUID is generated in Java for now
+        String hashedId = IDHash.hashUUID(userId);
         LocalDateTime createdAt = LocalDateTime.now();
 
-        String query = "INSERT INTO identifier (id, email, password_hash, login_method, created_at, last_login, failed_attempts, lockout_until) " +
-                       "VALUES (?, ?, ?, ?, ?, NULL, 0, NULL)";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setString(1, userId.toString());
-            pstmt.setString(2, email);
-            pstmt.setString(3, passwordHash);
-            pstmt.setString(4, loginMethod);
-            pstmt.setTimestamp(5, Timestamp.valueOf(createdAt));
+        return TransactionExecutor.executeStatement("registerIdentifierWithAccount", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(REGISTER_SQL)) {
+                pstmt.setString(1, userId.toString());
+                pstmt.setString(2, email);
+                pstmt.setString(3, passwordHash);
+                pstmt.setString(4, loginMethod);
+                pstmt.setTimestamp(5, Timestamp.valueOf(createdAt));
+                pstmt.setString(6, hashedId);
+                pstmt.setString(7, userName);
+                pstmt.setString(8, avatarLink);
+                pstmt.setString(9, bio);
 
-            int rowsInserted = pstmt.executeUpdate();
-            if (rowsInserted > 0) {
-                return new Identifier(userId, email, passwordHash, loginMethod, createdAt, null, 0, null);
+                if (pstmt.executeUpdate() == 0) {
+                    return null;
+                }
+                return new Registration(
+                        new Identifier(userId, email, passwordHash, loginMethod, createdAt, null, 0, null),
+                        new Account(hashedId, userName, avatarLink, bio));
             }
-        }
-        return null;
+        });
     }
 
+    static final String DELETE_IDENTIFIER_BY_EMAIL_SQL = "DELETE FROM identifier WHERE email = ?";
+
     public static boolean deleteIdentifierByEmail(String email) throws SQLException {
-        String query = "DELETE FROM identifier WHERE email = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, email);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        }
+        return TransactionExecutor.executeStatement("deleteIdentifierByEmail", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(DELETE_IDENTIFIER_BY_EMAIL_SQL)) {
+                pstmt.setString(1, email);
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            }
+        });
     }
 
+    static final String DELETE_IDENTIFIER_BY_ID_SQL = "DELETE FROM identifier WHERE id = ?";
+
     public static boolean deleteIdentifierByUserId(UUID identifierId) throws SQLException {
-        String query = "DELETE FROM identifier WHERE id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setObject(1, identifierId);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        }
+        return TransactionExecutor.executeStatement("deleteIdentifierByUserId", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(DELETE_IDENTIFIER_BY_ID_SQL)) {
+                pstmt.setObject(1, identifierId);
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            }
+        });
     }
 
     public static boolean deleteExpiredIdentifiers(int days) throws SQLException {
-        String expiredAccountsQuery = "SELECT user_id FROM deleted_accounts WHERE deleted_at < NOW() - INTERVAL '" + days + " days'";
-        Set<String> expiredUserIds = new HashSet<>();
-    
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(expiredAccountsQuery);
-             ResultSet rs = stmt.executeQuery()) {
-    
-            while (rs.next()) {
-                expiredUserIds.add(rs.getString("user_id"));
-            }
-        }
-    
-        if (expiredUserIds.isEmpty()) return false;
-    
-        String identifiersQuery = "SELECT id FROM identifier";
-        List<UUID> idsToDelete = new ArrayList<>();
-    
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(identifiersQuery);
-             ResultSet rs = stmt.executeQuery()) {
-    
-            while (rs.next()) {
-                UUID id = UUID.fromString(rs.getString("id"));
-                String hashed = IDHash.hashUUID(id);
-                if (expiredUserIds.contains(hashed)) {
-                    idsToDelete.add(id);
+        PurgeStats stats = purgeExpiredIdentifiers(days, PURGE_CHUNK_SIZE);
+        System.out.println("Expired identifier purge: " + stats);
+        return stats.deleted() > 0;
+    }
+
+    static final String COUNT_EXPIRED_DELETED_ACCOUNTS_SQL =
+            "SELECT COUNT(*) FROM deleted_accounts WHERE deleted_at < NOW() - (? * INTERVAL '1 day')";
+    static final String PURGE_EXPIRED_IDENTIFIERS_SQL = """
+        DELETE FROM identifier
+        WHERE id IN (
+            SELECT i.id
+            FROM deleted_accounts d
+            JOIN identifier i ON i.id_hash = d.user_id
+            WHERE d.deleted_at < NOW() - (? * INTERVAL '1 day')
+            LIMIT ?
+        )
+    """;
+
+    // Deletes identifiers whose account has sat in deleted_accounts longer than `days`,
+    // joining on id_hash in SQL and removing at most `chunkSize` rows per statement.
+    public static PurgeStats purgeExpiredIdentifiers(int days, int chunkSize) throws SQLException {
+        long start = System.nanoTime();
+        long scanned = 0;
+        long deleted = 0;
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(COUNT_EXPIRED_DELETED_ACCOUNTS_SQL)) {
+                stmt.setInt(1, days);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        scanned = rs.getLong(1);
+                    }
                 }
             }
         }
-    
-        if (idsToDelete.isEmpty()) return false;
-    
-        // Build SQL DELETE query using IN clause
-        String deleteQuery = "DELETE FROM identifier WHERE id = ANY (?)";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(deleteQuery)) {
-    
-            UUID[] uuidArray = idsToDelete.toArray(new UUID[0]);
-            Array sqlArray = conn.createArrayOf("UUID", uuidArray);
-            stmt.setArray(1, sqlArray);
-    
-            return stmt.executeUpdate() > 0;
+
+        if (scanned > 0) {
+            // Each chunk is its own implicit transaction, retried on 40001 without redoing earlier chunks
+            int batch;
+            do {
+                batch = TransactionExecutor.executeStatement("purgeExpiredIdentifiers", conn -> {
+                    try (PreparedStatement stmt = conn.prepareStatement(PURGE_EXPIRED_IDENTIFIERS_SQL)) {
+                        stmt.setInt(1, days);
+                        stmt.setInt(2, chunkSize);
+                        return stmt.executeUpdate();
+                    }
+                });
+                deleted += batch;
+            } while (batch == chunkSize);
         }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        return new PurgeStats(scanned, deleted, elapsedMs);
     }
-    
+
+    static final String UPDATE_PASSWORD_BY_EMAIL_SQL =
+            "UPDATE identifier SET password_hash = ?, failed_attempts = 0, lockout_until = NULL WHERE email = ?";
 
     public static boolean updatePassword(String email, String newPasswordHash) throws SQLException {
-        String query = "UPDATE identifier SET password_hash = ?, failed_attempts = 0, lockout_until = NULL WHERE email = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-    
-            pstmt.setString(1, newPasswordHash);
-            pstmt.setString(2, email);
-    
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        }
+        return TransactionExecutor.executeStatement("updatePassword", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_PASSWORD_BY_EMAIL_SQL)) {
+                pstmt.setString(1, newPasswordHash);
+                pstmt.setString(2, email);
+
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            }
+        });
     }
 
+    static final String UPDATE_PASSWORD_BY_ID_SQL =
+            "UPDATE identifier SET password_hash = ?, failed_attempts = 0, lockout_until = NULL WHERE id = ?";
+
     public static boolean changePassword(UUID userId, String newPasswordHash) throws SQLException {
-        String query = "UPDATE identifier SET password_hash = ?, failed_attempts = 0, lockout_until = NULL WHERE id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-    
-            pstmt.setString(1, newPasswordHash);
-            pstmt.setObject(2, userId);
-    
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        }
+        return TransactionExecutor.executeStatement("changePassword", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_PASSWORD_BY_ID_SQL)) {
+                pstmt.setString(1, newPasswordHash);
+                pstmt.setObject(2, userId);
+
+                int rowsAffected = pstmt.executeUpdate();
+                return rowsAffected > 0;
+            }
+        });
+    }
+
+    // Shared by every query that selects the identifier columns, so the mappings cannot drift apart
+    private static Identifier mapIdentifier(ResultSet rs) throws SQLException {
+        return new Identifier(
+            UUID.fromString(rs.getString("id")),
+            rs.getString("email"),
+            rs.getString("password_hash"),
+            rs.getString("login_method"),
+            rs.getTimestamp("created_at").toLocalDateTime(),
+            rs.getTimestamp("last_login") != null ? rs.getTimestamp("last_login").toLocalDateTime() : null,
+            rs.getInt("failed_attempts"),
+            rs.getTimestamp("lockout_until") != null ? rs.getTimestamp("lockout_until").toLocalDateTime() : null
+        );
     }
-    
-    
 }
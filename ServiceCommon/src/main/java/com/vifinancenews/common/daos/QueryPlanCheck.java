@@ -0,0 +1,180 @@
+package com.vifinancenews.common.daos;
+
+import com.vifinancenews.common.config.DatabaseConfig;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Runs EXPLAIN on the statements issued by AccountDAO and IdentifierDAO and fails if any plan
+ * contains a full table or index scan. Entries reference the DAOs' *_SQL constants directly, and
+ * {@link #uncoveredStatements()} fails the check when a DAO gains a constant with no entry here.
+ */
+public class QueryPlanCheck {
+
+    // Sample bind values; EXPLAIN plans them without executing the statement
+    private static final String USER_ID = "0".repeat(64);
+    private static final UUID IDENTIFIER_ID = UUID.fromString("00000000-0000-0000-0000-000000000000");
+    private static final String EMAIL = "plan-check@example.com";
+    private static final Timestamp NOW = Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 0, 0));
+    private static final int DAYS = 30;
+    private static final int LIMIT = 500;
+
+    // The listings run as follower reads; explaining them that way also checks the AS OF SYSTEM TIME syntax
+    private static final String FOLLOWER = ReadConsistency.FOLLOWER.asOfClause();
+
+    private static final List<Class<?>> DAOS = List.of(AccountDAO.class, IdentifierDAO.class);
+
+    /**
+     * @param template   a DAO *_SQL constant
+     * @param formatArgs values for the template's %s slots (empty for plain statements)
+     */
+    public static record PlannedQuery(String name, String template, List<Object> formatArgs, List<Object> params) {
+        public String sql() {
+            return template.formatted(formatArgs.toArray());
+        }
+    }
+
+    public static record PlanViolation(String name, String planLine) {}
+
+    private static PlannedQuery plain(String name, String sql, Object... params) {
+        return new PlannedQuery(name, sql, List.of(), List.of(params));
+    }
+
+    static final List<PlannedQuery> QUERIES = List.of(
+            // AccountDAO
+            plain("AccountDAO.getAccountByUserId", AccountDAO.SELECT_ACCOUNT_SQL, USER_ID),
+            plain("AccountDAO.moveAccountToDeleted (copy)", AccountDAO.COPY_ACCOUNT_TO_DELETED_SQL, USER_ID),
+            plain("AccountDAO.moveAccountToDeleted (delete)", AccountDAO.DELETE_ACCOUNT_SQL, USER_ID),
+            plain("AccountDAO.getDeletedAccountByUserId", AccountDAO.SELECT_DELETED_ACCOUNT_SQL, USER_ID),
+            plain("AccountDAO.isAccountInDeleted", AccountDAO.COUNT_DELETED_ACCOUNT_SQL, USER_ID),
+            plain("AccountDAO.restoreUserById (copy)", AccountDAO.RESTORE_ACCOUNT_SQL, USER_ID),
+            plain("AccountDAO.restoreUserById (delete)", AccountDAO.DELETE_DELETED_ACCOUNT_SQL, USER_ID),
+            plain("AccountDAO.getDeletedAccountDeletedAt", AccountDAO.SELECT_DELETED_AT_SQL, USER_ID),
+            plain("AccountDAO.deleteExpiredDeletedAccounts", AccountDAO.DELETE_EXPIRED_DELETED_ACCOUNTS_SQL, DAYS),
+            plain("AccountDAO.purgeExpiredAccountsBatch", AccountDAO.PURGE_EXPIRED_ACCOUNTS_BATCH_SQL, NOW, DAYS, LIMIT),
+            plain("AccountDAO.updateUsernameAndBioReturning", AccountDAO.UPDATE_USERNAME_AND_BIO_SQL,
+                    "name", "bio", USER_ID),
+            plain("AccountDAO.updateAvatarReturning", AccountDAO.UPDATE_AVATAR_SQL,
+                    "https://example.com/a.png", USER_ID),
+            plain("AccountDAO.countSavedArticles", AccountDAO.COUNT_SAVED_ARTICLES_SQL, USER_ID),
+            new PlannedQuery("AccountDAO.getSavedArticlesPage", AccountDAO.SAVED_ARTICLES_PAGE_SQL,
+                    List.of(FOLLOWER), List.of(USER_ID, 20, 0)),
+            new PlannedQuery("AccountDAO.getSavedArticlesAfter (first page)", AccountDAO.SAVED_ARTICLES_AFTER_SQL,
+                    List.of(FOLLOWER, ""), List.of(USER_ID, 20)),
+            new PlannedQuery("AccountDAO.getSavedArticlesAfter (next page)", AccountDAO.SAVED_ARTICLES_AFTER_SQL,
+                    List.of(FOLLOWER, AccountDAO.SAVED_ARTICLES_KEYSET_FILTER), List.of(USER_ID, NOW, "article", 20)),
+
+            // IdentifierDAO
+            plain("IdentifierDAO.getIdentifierByEmail", IdentifierDAO.SELECT_IDENTIFIER_BY_EMAIL_SQL, EMAIL),
+            plain("IdentifierDAO.getEmailsAfter (first page)", IdentifierDAO.EMAILS_FIRST_SQL, 10_000),
+            plain("IdentifierDAO.getEmailsAfter (next page)", IdentifierDAO.EMAILS_AFTER_SQL, EMAIL, 10_000),
+            plain("IdentifierDAO.getIdentifierByAccountId", IdentifierDAO.SELECT_IDENTIFIER_BY_ACCOUNT_ID_SQL, USER_ID),
+            plain("IdentifierDAO.resolveLogin", IdentifierDAO.RESOLVE_LOGIN_SQL, NOW, EMAIL, "local"),
+            plain("IdentifierDAO.updateFailedAttempts", IdentifierDAO.UPDATE_FAILED_ATTEMPTS_SQL, 5, NOW, EMAIL),
+            plain("IdentifierDAO.updateLastLogin", IdentifierDAO.UPDATE_LAST_LOGIN_SQL, NOW, EMAIL),
+            plain("IdentifierDAO.resetFailedAttempts", IdentifierDAO.RESET_FAILED_ATTEMPTS_SQL, EMAIL),
+            plain("IdentifierDAO.registerIdentifierWithAccount", IdentifierDAO.REGISTER_SQL,
+                    IDENTIFIER_ID.toString(), EMAIL, "hash", "local", NOW, USER_ID, "name", "https://example.com/a.png", "bio"),
+            plain("IdentifierDAO.deleteIdentifierByEmail", IdentifierDAO.DELETE_IDENTIFIER_BY_EMAIL_SQL, EMAIL),
+            plain("IdentifierDAO.deleteIdentifierByUserId", IdentifierDAO.DELETE_IDENTIFIER_BY_ID_SQL, IDENTIFIER_ID),
+            plain("IdentifierDAO.purgeExpiredIdentifiers (count)", IdentifierDAO.COUNT_EXPIRED_DELETED_ACCOUNTS_SQL, DAYS),
+            plain("IdentifierDAO.purgeExpiredIdentifiers (delete)", IdentifierDAO.PURGE_EXPIRED_IDENTIFIERS_SQL, DAYS, LIMIT),
+            plain("IdentifierDAO.updatePassword", IdentifierDAO.UPDATE_PASSWORD_BY_EMAIL_SQL, "hash", EMAIL),
+            plain("IdentifierDAO.changePassword", IdentifierDAO.UPDATE_PASSWORD_BY_ID_SQL, "hash", IDENTIFIER_ID)
+    );
+
+    /**
+     * Checks catalogue coverage, then explains every catalogued query and prints the offending plan lines.
+     *
+     * @return true if every DAO statement is catalogued and no plan contains a full scan
+     */
+    public static boolean run() throws SQLException {
+        List<String> uncovered = uncoveredStatements();
+        for (String constant : uncovered) {
+            System.err.println("No plan check entry for " + constant);
+        }
+
+        List<PlanViolation> violations = findFullScans();
+        for (PlanViolation violation : violations) {
+            System.err.println("Full scan in " + violation.name() + ": " + violation.planLine());
+        }
+        System.out.println("Query plan check: " + QUERIES.size() + " queries, " + violations.size() + " full scan(s), "
+                + uncovered.size() + " uncovered statement(s)");
+        return uncovered.isEmpty() && violations.isEmpty();
+    }
+
+    // DAO *_SQL constants that no catalogue entry references
+    public static List<String> uncoveredStatements() {
+        Set<String> covered = new HashSet<>();
+        for (PlannedQuery query : QUERIES) {
+            covered.add(query.template());
+        }
+
+        List<String> uncovered = new ArrayList<>();
+        for (Class<?> dao : DAOS) {
+            for (Field field : dao.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers)
+                        || field.getType() != String.class || !field.getName().endsWith("_SQL")) {
+                    continue;
+                }
+                try {
+                    if (!covered.contains((String) field.get(null))) {
+                        uncovered.add(dao.getSimpleName() + "." + field.getName());
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot read " + dao.getSimpleName() + "." + field.getName(), e);
+                }
+            }
+        }
+        return uncovered;
+    }
+
+    public static List<PlanViolation> findFullScans() throws SQLException {
+        List<PlanViolation> violations = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            for (PlannedQuery query : QUERIES) {
+                for (String line : explain(conn, query)) {
+                    if (isFullScan(line)) {
+                        violations.add(new PlanViolation(query.name(), line.strip()));
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static List<String> explain(Connection conn, PlannedQuery query) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + query.sql())) {
+            for (int i = 0; i < query.params().size(); i++) {
+                pstmt.setObject(i + 1, query.params().get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("EXPLAIN failed for " + query.name() + ": " + e.getMessage(), e.getSQLState(), e);
+        }
+        return plan;
+    }
+
+    // "FULL SCAN (SOFT LIMIT)" is an ordered index walk that stops at the LIMIT, not a table scan
+    private static boolean isFullScan(String planLine) {
+        return planLine.contains("FULL SCAN") && !planLine.contains("FULL SCAN (SOFT LIMIT)");
+    }
+}
@@ -0,0 +1,20 @@
+package com.vifinancenews.common.daos;
+
+/**
+ * How fresh a DAO read must be. Follower reads are served by the nearest replica instead of the
+ * leaseholder, which avoids a cross-region hop in multi-region clusters.
+ */
+public enum ReadConsistency {
+    // Current data from the leaseholder (default)
+    STRONG,
+    // Consistent snapshot a few seconds old (follower_read_timestamp()); works for any read-only query
+    FOLLOWER;
+
+    // AS OF SYSTEM TIME clause to place after the FROM clause ("" for STRONG)
+    public String asOfClause() {
+        return switch (this) {
+            case STRONG -> "";
+            case FOLLOWER -> "AS OF SYSTEM TIME follower_read_timestamp()";
+        };
+    }
+}
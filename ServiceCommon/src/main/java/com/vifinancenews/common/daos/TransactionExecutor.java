@@ -0,0 +1,159 @@
+package com.vifinancenews.common.daos;
+
+import com.vifinancenews.common.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Runs DAO writes with CockroachDB's client-side retry handling for serialization failures (40001).
+ *
+ * execute() follows the savepoint protocol: SAVEPOINT cockroach_restart, run the body, RELEASE and
+ * COMMIT; on 40001 ROLLBACK TO SAVEPOINT and run the body again on the same connection.
+ * executeStatement() is for single-statement (implicit) transactions and simply re-runs them.
+ * Both back off with jitter between attempts and record retries per operation name.
+ */
+public class TransactionExecutor {
+    private static final String SERIALIZATION_FAILURE = "40001";
+    private static final String RESTART_SAVEPOINT = "cockroach_restart";
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 10;
+
+    private static final Map<String, OperationCounters> counters = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface TransactionBody<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    // Explicit transaction that always commits when the body returns
+    public static <T> T execute(String operation, TransactionBody<T> body) throws SQLException {
+        return execute(operation, body, result -> true);
+    }
+
+    // Explicit transaction; commits only if shouldCommit accepts the body's result, otherwise rolls back
+    public static <T> T execute(String operation, TransactionBody<T> body, Predicate<T> shouldCommit) throws SQLException {
+        OperationCounters stats = countersFor(operation);
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            // Autocommit is only turned back on once the transaction has ended; re-enabling it on an
+            // open transaction would commit whatever the body had written so far
+            boolean ended = false;
+            try {
+                Savepoint restart = conn.setSavepoint(RESTART_SAVEPOINT);
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        T result = body.run(conn);
+                        if (!shouldCommit.test(result)) {
+                            conn.rollback();
+                            ended = true;
+                            stats.succeeded.increment();
+                            return result;
+                        }
+                        conn.releaseSavepoint(restart);
+                        conn.commit();
+                        ended = true;
+                        stats.succeeded.increment();
+                        return result;
+                    } catch (SQLException e) {
+                        if (!isRetryable(e) || attempt >= MAX_ATTEMPTS) {
+                            throw e;
+                        }
+                        stats.retries.increment();
+                        conn.rollback(restart);
+                        backoff(attempt);
+                    }
+                }
+            } catch (SQLException | RuntimeException | Error e) {
+                // Non-retryable SQL errors, a failed restart or backoff, and anything the body throws
+                stats.failed.increment();
+                ended = rollbackQuietly(conn);
+                throw e;
+            } finally {
+                if (ended) {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    // Single statement in autocommit mode (e.g. a mutating CTE); the whole call is re-run on 40001
+    public static <T> T executeStatement(String operation, TransactionBody<T> body) throws SQLException {
+        OperationCounters stats = countersFor(operation);
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                T result = body.run(conn);
+                stats.succeeded.increment();
+                return result;
+            } catch (SQLException e) {
+                if (!isRetryable(e) || attempt >= MAX_ATTEMPTS) {
+                    stats.failed.increment();
+                    throw e;
+                }
+                stats.retries.increment();
+                backoff(attempt);
+            } catch (RuntimeException | Error e) {
+                stats.failed.increment();
+                throw e;
+            }
+        }
+    }
+
+    // Per-operation counts, sorted by operation name
+    public static Map<String, RetryStats> getRetryStats() {
+        Map<String, RetryStats> snapshot = new TreeMap<>();
+        counters.forEach((operation, c) ->
+                snapshot.put(operation, new RetryStats(c.succeeded.sum(), c.retries.sum(), c.failed.sum())));
+        return snapshot;
+    }
+
+    public static record RetryStats(long succeeded, long retries, long failed) {}
+
+    private static boolean isRetryable(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && SERIALIZATION_FAILURE.equals(sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Exponential backoff with full jitter on top: 10 ms, 20 ms, 40 ms ... capped at 640 ms
+    private static void backoff(int attempt) throws SQLException {
+        long base = BASE_BACKOFF_MS << Math.min(attempt - 1, 6);
+        try {
+            Thread.sleep(base + ThreadLocalRandom.current().nextLong(base + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while backing off", e);
+        }
+    }
+
+    // Returns false if the rollback itself failed; the pool then discards or resets the connection on close
+    private static boolean rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Rollback failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static OperationCounters countersFor(String operation) {
+        return counters.computeIfAbsent(operation, key -> new OperationCounters());
+    }
+
+    private static class OperationCounters {
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+}
@@ -0,0 +1,99 @@
+package com.vifinancenews.common.migrations;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * The schema, as an ordered list of versioned migrations applied by {@link SchemaMigrator}.
+ * Applied migrations must never be edited (their checksum is verified on every run); change the
+ * schema by appending a new version. Statements are idempotent so a half-applied version can be re-run.
+ */
+public final class Migrations {
+
+    public static final List<Migration> ALL = List.of(
+            new Migration(1, "baseline tables", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS identifier (
+                        id UUID PRIMARY KEY,
+                        email STRING NOT NULL,
+                        password_hash STRING,
+                        login_method STRING NOT NULL DEFAULT 'local',
+                        created_at TIMESTAMP NOT NULL DEFAULT now(),
+                        last_login TIMESTAMP,
+                        failed_attempts INT NOT NULL DEFAULT 0,
+                        lockout_until TIMESTAMP
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS account (
+                        user_id STRING PRIMARY KEY,
+                        username STRING,
+                        avatar_link STRING,
+                        bio STRING
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS deleted_accounts (
+                        user_id STRING PRIMARY KEY,
+                        username STRING,
+                        avatar_link STRING,
+                        bio STRING,
+                        deleted_at TIMESTAMP NOT NULL DEFAULT now()
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS article (
+                        article_id STRING PRIMARY KEY,
+                        title STRING,
+                        url STRING
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS account_article (
+                        user_id STRING NOT NULL,
+                        article_id STRING NOT NULL REFERENCES article (article_id) ON DELETE CASCADE,
+                        saved_at TIMESTAMP NOT NULL DEFAULT now(),
+                        PRIMARY KEY (user_id, article_id)
+                    )
+                    """
+            )),
+            // account.user_id and deleted_accounts.user_id hold sha256(identifier.id); joins go through this column
+            new Migration(2, "identifier id_hash computed column", List.of(
+                    "ALTER TABLE identifier ADD COLUMN IF NOT EXISTS id_hash STRING AS (sha256(id::STRING)) STORED"
+            )),
+            new Migration(3, "indexes for DAO lookups", List.of(
+                    // getIdentifierByEmail, resolveLogin, lockout/password updates, getEmailsAfter (ordered scan)
+                    "CREATE UNIQUE INDEX IF NOT EXISTS identifier_email_key ON identifier (email)",
+                    // account/deleted_accounts joins and the purge's DELETE ... WHERE id_hash IN (...)
+                    "CREATE UNIQUE INDEX IF NOT EXISTS identifier_id_hash_key ON identifier (id_hash)",
+                    // Purge batches walk deleted_accounts by deleted_at from a checkpoint
+                    "CREATE INDEX IF NOT EXISTS deleted_accounts_deleted_at_idx ON deleted_accounts (deleted_at)",
+                    // Saved-article pages: ordered by (saved_at, article_id) DESC within a user, no sort and no
+                    // primary-key lookup; article_id is already a primary key column, so it is a key column here
+                    // rather than STORING (CockroachDB rejects storing primary key columns)
+                    "CREATE INDEX IF NOT EXISTS account_article_user_saved_at_idx ON account_article (user_id, saved_at DESC, article_id DESC)"
+            ))
+    );
+
+    private Migrations() {}
+
+    public static record Migration(int version, String description, List<String> statements) {
+
+        // SHA-256 over the statements; detects edits to a migration after it has been applied
+        public String checksum() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (String statement : statements) {
+                    digest.update(statement.strip().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) ';');
+                }
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.vifinancenews.common.migrations;
+
+import com.vifinancenews.common.config.DatabaseConfig;
+import com.vifinancenews.common.daos.QueryPlanCheck;
+import com.vifinancenews.common.migrations.Migrations.Migration;
+import com.vifinancenews.common.utilities.RedisCacheService;
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@link Migrations} in version order and records each one in schema_migrations.
+ * Runs at service startup (MIGRATE_ON_STARTUP, default true) or from the command line:
+ * <pre>
+ *   java -cp ServiceCommon.jar com.vifinancenews.common.migrations.SchemaMigrator migrate|status|check
+ * </pre>
+ * {@code check} runs {@link QueryPlanCheck} against the migrated schema; {@code mvn -P schema-check verify}
+ * in ServiceCommon runs migrate and check against the database in .env.
+ */
+public class SchemaMigrator {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private static final boolean MIGRATE_ON_STARTUP = Boolean.parseBoolean(dotenv.get("MIGRATE_ON_STARTUP", "true"));
+
+    private static final String LOCK_NAME = "schema-migrations";
+    private static final long LOCK_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long LOCK_WAIT_MS = TimeUnit.MINUTES.toMillis(2);
+
+    private static final String CREATE_HISTORY_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_migrations (
+                version INT PRIMARY KEY,
+                description STRING NOT NULL,
+                checksum STRING NOT NULL,
+                applied_at TIMESTAMP NOT NULL DEFAULT now()
+            )
+            """;
+
+    public static record AppliedMigration(int version, String description, String checksum, LocalDateTime appliedAt) {}
+
+    // Called from each service's main before it starts serving; a failed migration stops startup
+    public static void migrateOnStartup() {
+        if (!MIGRATE_ON_STARTUP) {
+            System.out.println("Schema migrations skipped (MIGRATE_ON_STARTUP=false)");
+            return;
+        }
+        try {
+            migrate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Schema migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Applies every pending migration. Replicas starting together serialize on a Redis lock; the
+     * statements are idempotent, so a run that lost the lock (or Redis) still converges safely.
+     *
+     * @return the number of migrations applied by this call
+     */
+    public static int migrate() throws SQLException {
+        String lockToken = acquireLock();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // CockroachDB runs schema changes best outside explicit transactions
+            conn.setAutoCommit(true);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_HISTORY_TABLE);
+            }
+
+            Map<Integer, AppliedMigration> applied = loadApplied(conn);
+            int count = 0;
+            for (Migration migration : Migrations.ALL) {
+                AppliedMigration existing = applied.get(migration.version());
+                if (existing != null) {
+                    if (!existing.checksum().equals(migration.checksum())) {
+                        throw new SQLException("Migration V" + migration.version() + " (" + migration.description()
+                                + ") was changed after it was applied; add a new migration instead");
+                    }
+                    continue;
+                }
+                apply(conn, migration);
+                count++;
+            }
+
+            System.out.println(count == 0
+                    ? "Schema is up to date at V" + latestVersion()
+                    : "Applied " + count + " schema migration(s), now at V" + latestVersion());
+            return count;
+        } finally {
+            if (lockToken != null) {
+                RedisCacheService.unlock(LOCK_NAME, lockToken);
+            }
+        }
+    }
+
+    public static List<AppliedMigration> status() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_HISTORY_TABLE);
+            }
+            return new ArrayList<>(loadApplied(conn).values());
+        }
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        System.out.println("Applying schema migration V" + migration.version() + ": " + migration.description());
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : migration.statements()) {
+                stmt.execute(statement);
+            }
+        }
+
+        String record = "INSERT INTO schema_migrations (version, description, checksum, applied_at) VALUES (?, ?, ?, ?) "
+                + "ON CONFLICT (version) DO NOTHING";
+        try (PreparedStatement pstmt = conn.prepareStatement(record)) {
+            pstmt.setInt(1, migration.version());
+            pstmt.setString(2, migration.description());
+            pstmt.setString(3, migration.checksum());
+            pstmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.executeUpdate();
+        }
+        System.out.println("Applied V" + migration.version() + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private static Map<Integer, AppliedMigration> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, AppliedMigration> applied = new HashMap<>();
+        String query = "SELECT version, description, checksum, applied_at FROM schema_migrations ORDER BY version";
+        try (PreparedStatement pstmt = conn.prepareStatement(query);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), new AppliedMigration(
+                        rs.getInt("version"),
+                        rs.getString("description"),
+                        rs.getString("checksum"),
+                        rs.getTimestamp("applied_at").toLocalDateTime()));
+            }
+        }
+        return applied;
+    }
+
+    // Waits for another replica's run to finish; proceeds without the lock if it never frees up
+    private static String acquireLock() {
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_MS;
+        while (true) {
+            String token = RedisCacheService.tryLock(LOCK_NAME, LOCK_TTL_MS);
+            if (token != null || System.currentTimeMillis() >= deadline) {
+                if (token == null) {
+                    System.err.println("Schema migration lock still held after " + LOCK_WAIT_MS + " ms; continuing without it");
+                }
+                return token;
+            }
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private static int latestVersion() {
+        return Migrations.ALL.get(Migrations.ALL.size() - 1).version();
+    }
+
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "migrate";
+        try {
+            switch (command) {
+                case "migrate" -> migrate();
+                case "status" -> {
+                    Map<Integer, AppliedMigration> applied = new HashMap<>();
+                    for (AppliedMigration migration : status()) {
+                        applied.put(migration.version(), migration);
+                    }
+                    for (Migration migration : Migrations.ALL) {
+                        AppliedMigration done = applied.get(migration.version());
+                        String state = done == null ? "pending"
+                                : done.checksum().equals(migration.checksum()) ? "applied " + done.appliedAt()
+                                : "CHANGED after apply";
+                        System.out.println("V" + migration.version() + " " + migration.description() + ": " + state);
+                    }
+                }
+                case "check" -> {
+                    if (!QueryPlanCheck.run()) {
+                        System.exit(1);
+                    }
+                }
+                default -> {
+                    System.err.println("Usage: SchemaMigrator migrate|status|check");
+                    System.exit(2);
+                }
+            }
+            System.exit(0);
+        } catch (SQLException e) {
+            System.err.println("Schema " + command + " failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
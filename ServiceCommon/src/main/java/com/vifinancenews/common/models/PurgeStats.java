@@ -0,0 +1,14 @@
+package com.vifinancenews.common.models;
+
+// Outcome of a purge run: rows examined, rows removed and wall-clock time taken
+public record PurgeStats(long scanned, long deleted, long elapsedMs) {
+
+    @Override
+    public String toString() {
+        return "PurgeStats{" +
+                "scanned=" + scanned +
+                ", deleted=" + deleted +
+                ", elapsedMs=" + elapsedMs +
+                '}';
+    }
+}
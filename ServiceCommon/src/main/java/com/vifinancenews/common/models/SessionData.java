@@ -0,0 +1,9 @@
+package com.vifinancenews.common.models;
+
+// Server-side session: the hashed account id it belongs to and when it was created (epoch millis)
+public record SessionData(String userId, long createdAt) {
+
+    public static SessionData forUser(String userId) {
+        return new SessionData(userId, System.currentTimeMillis());
+    }
+}
@@ -25,6 +25,21 @@ public class AccountDeletionScheduler {
                           initialDelay, intervalHours);
     }
 
+    /**
+     * Starts a background task that runs repeatedly with a fixed delay between the end of one
+     * run and the start of the next. Suited to small, frequent batches.
+     *
+     * @param task         the cleanup or maintenance task to run
+     * @param initialDelay delay before first execution
+     * @param delay        delay between the end of one execution and the start of the next
+     * @param unit         time unit of initialDelay and delay
+     */
+    public static void startWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        scheduler.scheduleWithFixedDelay(task, initialDelay, delay, unit);
+        System.out.printf("Scheduled task started: initial delay = %d %s, delay = %d %s%n",
+                          initialDelay, unit.name().toLowerCase(), delay, unit.name().toLowerCase());
+    }
+
     /**
      * Optionally shut down the scheduler gracefully.
      */
@@ -0,0 +1,63 @@
+package com.vifinancenews.common.utilities;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free bloom filter over strings; mightContain never returns a false negative for a value that was put
+class BloomFilter {
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+
+    BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int expected = Math.max(1, expectedInsertions);
+        long optimalBits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 64));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expected * Math.log(2)));
+        this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+    }
+
+    void put(String value) {
+        for (int bit : bitIndexes(value, numHashes, numBits)) {
+            long mask = 1L << bit;
+            bits.accumulateAndGet(bit >>> 6, mask, (current, m) -> current | m);
+        }
+    }
+
+    boolean mightContain(String value) {
+        for (int bit : bitIndexes(value, numHashes, numBits)) {
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Bit positions for a value (double hashing); shared with filters kept outside the JVM, e.g. Redis bitmaps
+    static int[] bitIndexes(String value, int numHashes, int numBits) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int[] indexes = new int[numHashes];
+        for (int i = 1; i <= numHashes; i++) {
+            int combined = h1 + i * h2;
+            indexes[i - 1] = (combined < 0 ? ~combined : combined) % numBits;
+        }
+        return indexes;
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so both halves are well spread
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,197 @@
+package com.vifinancenews.common.utilities;
+
+import com.vifinancenews.common.daos.IdentifierDAO;
+import io.github.cdimascio.dotenv.Dotenv;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers "is this email registered?" without touching the database for most misses.
+ *
+ * A bloom filter of registered emails lives in a Redis bitmap shared by all replicas. Inserts set
+ * their bits immediately; deletes cannot clear bits, so the filter is rebuilt from the identifier
+ * table daily. Confirmed misses are also cached briefly (negative cache) and dropped on insert.
+ * Whenever the bitmap is missing (not built yet, evicted, lost in a failover) every email is reported
+ * as possibly present; inserts never create it, so a partial bitmap cannot pass for a complete one.
+ */
+public class EmailDirectory {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private static final String FILTER_KEY = "email:bloom";
+    private static final String REBUILD_KEY = "email:bloom:next";
+    private static final int NEGATIVE_TTL_SECONDS = 60;
+    // Outlives any negative entry written by a lookup that raced the registration
+    private static final int REGISTERED_MARKER_TTL_SECONDS = NEGATIVE_TTL_SECONDS * 2;
+
+    // 2^24 bits (2 MB) and 7 hashes: about 1% false positives at 1M emails
+    private static final int FILTER_BITS = Integer.parseInt(dotenv.get("EMAIL_BLOOM_BITS", String.valueOf(1 << 24)));
+    private static final int FILTER_HASHES = 7;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    // KEYS[1] = negative entry, KEYS[2] = filter; ARGV = bit offsets
+    // Returns 0 = definitely not registered, 1 = possibly registered
+    private static final String LOOKUP_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "if redis.call('EXISTS', KEYS[2]) == 0 then return 1 end " +
+            "for _, offset in ipairs(ARGV) do " +
+            "  if redis.call('GETBIT', KEYS[2], offset) == 0 then return 0 end " +
+            "end " +
+            "return 1";
+
+    // KEYS[1] = filter, KEYS[2] = filter being rebuilt, KEYS[3] = negative entry, KEYS[4] = registered marker
+    // ARGV[1] = marker TTL seconds, ARGV[2..] = bit offsets
+    // Bits go only into keys that already exist: creating the filter here would make it look complete
+    private static final String ADD_SCRIPT =
+            "local live = redis.call('EXISTS', KEYS[1]) == 1 " +
+            "local rebuilding = redis.call('EXISTS', KEYS[2]) == 1 " +
+            "for i = 2, #ARGV do " +
+            "  if live then redis.call('SETBIT', KEYS[1], ARGV[i], 1) end " +
+            "  if rebuilding then redis.call('SETBIT', KEYS[2], ARGV[i], 1) end " +
+            "end " +
+            "redis.call('DEL', KEYS[3]) " +
+            "redis.call('SET', KEYS[4], '1', 'EX', ARGV[1]) " +
+            "return 1";
+
+    // KEYS[1] = negative entry, KEYS[2] = registered marker; ARGV[1] = negative TTL seconds
+    // Skips the write if the email was registered after the caller's database miss
+    private static final String ABSENT_SCRIPT =
+            "if redis.call('EXISTS', KEYS[2]) == 1 then return 0 end " +
+            "redis.call('SET', KEYS[1], '1', 'EX', ARGV[1]) " +
+            "return 1";
+
+    private static ScheduledExecutorService maintenance;
+
+    // false means the email is definitely not registered; true means check the database
+    public static boolean mightExist(String email) {
+        if (email == null) return false;
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            Object result = jedis.eval(LOOKUP_SCRIPT,
+                    List.of(formatNegativeKey(email), FILTER_KEY), offsets(email));
+            return !Long.valueOf(0L).equals(result);
+        } catch (JedisException e) {
+            System.err.println("Redis error while checking email filter: " + e.getMessage());
+            return true;
+        }
+    }
+
+    // Call after the database confirmed the email is not registered
+    public static void recordAbsent(String email) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.eval(ABSENT_SCRIPT, List.of(formatNegativeKey(email), formatRegisteredKey(email)),
+                    List.of(String.valueOf(NEGATIVE_TTL_SECONDS)));
+        } catch (JedisException e) {
+            System.err.println("Redis error while caching absent email: " + e.getMessage());
+        }
+    }
+
+    // Call after inserting an identifier so the email is visible to the filter immediately
+    public static void recordRegistered(String email) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            List<String> args = new ArrayList<>(FILTER_HASHES + 1);
+            args.add(String.valueOf(REGISTERED_MARKER_TTL_SECONDS));
+            args.addAll(offsets(email));
+            jedis.eval(ADD_SCRIPT,
+                    List.of(FILTER_KEY, REBUILD_KEY, formatNegativeKey(email), formatRegisteredKey(email)), args);
+        } catch (JedisException e) {
+            // A missing bit would hide this email from lookups; drop the filter so lookups use the database until rebuilt
+            System.err.println("Redis error while adding email to filter, disabling it until rebuilt: " + e.getMessage());
+            try (Jedis jedis = RedisConnection.getConnection()) {
+                jedis.del(FILTER_KEY, formatNegativeKey(email));
+            } catch (JedisException ignored) {
+                // Redis is down; lookups fall back to the database anyway
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the filter from the identifier table into a side key and swaps it in.
+     * Inserts that happen meanwhile are written to both keys, so none are lost.
+     */
+    public static void rebuild() throws Exception {
+        long start = System.currentTimeMillis();
+        long count = 0;
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.del(REBUILD_KEY);
+            jedis.setbit(REBUILD_KEY, 0, false); // exists from now on, so concurrent inserts mirror into it
+
+            String after = null;
+            List<String> emails;
+            do {
+                emails = IdentifierDAO.getEmailsAfter(after, REBUILD_BATCH_SIZE);
+                Pipeline pipeline = jedis.pipelined();
+                for (String email : emails) {
+                    for (int bit : BloomFilter.bitIndexes(email, FILTER_HASHES, FILTER_BITS)) {
+                        pipeline.setbit(REBUILD_KEY, bit, true);
+                    }
+                }
+                pipeline.sync();
+                count += emails.size();
+                if (!emails.isEmpty()) {
+                    after = emails.get(emails.size() - 1);
+                }
+            } while (emails.size() == REBUILD_BATCH_SIZE);
+
+            jedis.rename(REBUILD_KEY, FILTER_KEY);
+        }
+        System.out.println("Email filter rebuilt: " + count + " emails in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Builds the filter at startup if it is missing, rechecks hourly in case it was lost, and rebuilds
+     * daily to shed deleted emails. A Redis lock keeps replicas from rebuilding at the same time.
+     */
+    public static synchronized void startMaintenance() {
+        if (maintenance != null) return;
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> rebuildIfNeeded(false), 0, 1, TimeUnit.HOURS);
+        maintenance.scheduleWithFixedDelay(() -> rebuildIfNeeded(true), 24, 24, TimeUnit.HOURS);
+    }
+
+    private static void rebuildIfNeeded(boolean force) {
+        try {
+            if (!force) {
+                try (Jedis jedis = RedisConnection.getConnection()) {
+                    if (jedis.exists(FILTER_KEY)) return;
+                }
+            }
+
+            String lockToken = RedisCacheService.tryLock("email-filter-rebuild", TimeUnit.MINUTES.toMillis(10));
+            if (lockToken == null) return; // another replica is on it
+            try {
+                rebuild();
+            } finally {
+                RedisCacheService.unlock("email-filter-rebuild", lockToken);
+            }
+        } catch (Exception e) {
+            System.err.println("Email filter rebuild failed: " + e.getMessage());
+        }
+    }
+
+    private static List<String> offsets(String email) {
+        List<String> offsets = new ArrayList<>(FILTER_HASHES);
+        for (int bit : BloomFilter.bitIndexes(email, FILTER_HASHES, FILTER_BITS)) {
+            offsets.add(String.valueOf(bit));
+        }
+        return offsets;
+    }
+
+    private static String formatNegativeKey(String email) {
+        return "email:absent:" + email;
+    }
+
+    private static String formatRegisteredKey(String email) {
+        return "email:registered:" + email;
+    }
+}
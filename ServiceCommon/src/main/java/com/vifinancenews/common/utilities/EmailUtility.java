@@ -1,9 +1,16 @@
 package com.vifinancenews.common.utilities;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.mail.*;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
@@ -13,6 +20,55 @@ public class EmailUtility {
     private static String SENDER_EMAIL;
     private static String SENDER_PASSWORD;
 
+    // Redis-backed outbox: pending messages, claimed messages scored by claim time, and delayed retries
+    private static final String OUTBOX_KEY = "mail:outbox";
+    private static final String PROCESSING_KEY = "mail:processing";
+    private static final String RETRY_KEY = "mail:retry";
+    private static final int BATCH_SIZE = 10;       // messages sent per SMTP connection turn
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long IDLE_POLL_MS = 250;   // wait between claims while the outbox is empty
+
+    // KEYS[1] = outbox, KEYS[2] = processing; ARGV[1] = now ms, ARGV[2] = max messages
+    // Moves up to ARGV[2] messages from the outbox into the processing set in one atomic step
+    private static final String CLAIM_SCRIPT =
+            "local claimed = {} " +
+            "for i = 1, tonumber(ARGV[2]) do " +
+            "  local raw = redis.call('RPOP', KEYS[1]) " +
+            "  if not raw then break end " +
+            "  redis.call('ZADD', KEYS[2], ARGV[1], raw) " +
+            "  claimed[#claimed + 1] = raw " +
+            "end " +
+            "return claimed";
+
+    // KEYS[1] = processing; ARGV[1] = now ms, ARGV[2] = message
+    // Re-stamps a claim just before sending; 0 means another worker has reclaimed the message
+    private static final String RENEW_SCRIPT =
+            "if not redis.call('ZSCORE', KEYS[1], ARGV[2]) then return 0 end " +
+            "redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2]) " +
+            "return 1";
+
+    // KEYS[1] = processing, KEYS[2] = outbox; ARGV[1] = claims older than this (ms) are abandoned
+    // Returns how many abandoned messages were put back at the head of the outbox
+    private static final String RECLAIM_SCRIPT =
+            "local stale = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, 100) " +
+            "for _, raw in ipairs(stale) do " +
+            "  redis.call('ZREM', KEYS[1], raw) " +
+            "  redis.call('RPUSH', KEYS[2], raw) " +
+            "end " +
+            "return #stale";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static Session session;
+    private static int workerCount;
+    private static long visibilityTimeoutMs;
+
+    private static final LongAdder sent = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    private static final LongAdder retried = new LongAdder();
+    private static final LongAdder latencyTotalMs = new LongAdder();
+    private static final AtomicLong latencyMaxMs = new AtomicLong();
+
     // Load environment variables
     static {
         Dotenv dotenv = Dotenv.load();
@@ -22,29 +78,234 @@ public class EmailUtility {
         if (SENDER_EMAIL == null || SENDER_PASSWORD == null) {
             throw new RuntimeException("Missing email credentials in .env file.");
         }
-    }
 
-    public static void sendOTP(String recipientEmail, String otpCode) throws MessagingException {
         Properties props = new Properties();
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", "true");
         props.put("mail.smtp.host", SMTP_HOST);
         props.put("mail.smtp.port", SMTP_PORT);
 
-        Session session = Session.getInstance(props, new Authenticator() {
+        session = Session.getInstance(props, new Authenticator() {
             @Override
             protected PasswordAuthentication getPasswordAuthentication() {
                 return new PasswordAuthentication(SENDER_EMAIL, SENDER_PASSWORD);
             }
         });
 
+        workerCount = Integer.parseInt(dotenv.get("MAIL_WORKERS", "2"));
+        // A claim older than this is treated as abandoned (crashed or replaced worker) and sent again
+        visibilityTimeoutMs = Long.parseLong(dotenv.get("MAIL_VISIBILITY_TIMEOUT_SECONDS", "120")) * 1000L;
+    }
+
+    // Queues the OTP email for the delivery workers and returns immediately
+    public static void enqueueOTP(String recipientEmail, String otpCode) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            OutboundMail mail = new OutboundMail(recipientEmail, otpCode, System.currentTimeMillis(), 0);
+            jedis.lpush(OUTBOX_KEY, objectMapper.writeValueAsString(mail));
+            System.out.println("OTP email queued for: " + recipientEmail);
+        } catch (Exception e) {
+            System.err.println("Error queueing OTP email for " + recipientEmail + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the delivery workers (MAIL_WORKERS, default 2). Each worker keeps its own
+     * authenticated SMTP connection open and reuses it across messages.
+     */
+    public static synchronized void startDeliveryWorkers() {
+        reclaimAbandoned();
+        for (int i = 1; i <= workerCount; i++) {
+            Thread worker = new Thread(new DeliveryWorker(), "mail-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        System.out.println("Mail delivery workers started: " + workerCount);
+    }
+
+    public static DeliveryStats getDeliveryStats() {
+        long delivered = sent.sum();
+        long pending = 0;
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            pending = jedis.llen(OUTBOX_KEY) + jedis.zcard(PROCESSING_KEY) + jedis.zcard(RETRY_KEY);
+        } catch (Exception e) {
+            System.err.println("Redis error while reading mail queue depth: " + e.getMessage());
+        }
+        return new DeliveryStats(pending, delivered, failed.sum(), retried.sum(),
+                delivered == 0 ? 0.0 : latencyTotalMs.sum() / (double) delivered,
+                latencyMaxMs.get());
+    }
+
+    public static record DeliveryStats(long pending, long sent, long failed, long retried,
+                                       double avgLatencyMs, long maxLatencyMs) {}
+
+    // Queued message; attempts counts previous failed deliveries
+    public static record OutboundMail(String to, String otp, long enqueuedAt, int attempts) {}
+
+    private static Message buildOtpMessage(String recipientEmail, String otpCode) throws MessagingException {
         Message message = new MimeMessage(session);
         message.setFrom(new InternetAddress(SENDER_EMAIL));
         message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipientEmail));
         message.setSubject("Your OTP Code");
         message.setText("Your OTP code is: " + otpCode + "\nThis code is valid for 5 minutes.");
+        return message;
+    }
+
+    // Puts messages whose claim outlived the visibility timeout back in the outbox; any worker may do this
+    private static void reclaimAbandoned() {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            long cutoff = System.currentTimeMillis() - visibilityTimeoutMs;
+            Object moved = jedis.eval(RECLAIM_SCRIPT, List.of(PROCESSING_KEY, OUTBOX_KEY), List.of(String.valueOf(cutoff)));
+            if (moved instanceof Long count && count > 0) {
+                System.out.println("Requeued abandoned emails: " + count);
+            }
+        } catch (Exception e) {
+            System.err.println("Redis error while requeueing abandoned emails: " + e.getMessage());
+        }
+    }
+
+    private static class DeliveryWorker implements Runnable {
+        private Transport transport;
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    promoteDueRetries();
+                    reclaimAbandoned();
+                    List<String> batch = takeBatch();
+                    if (batch.isEmpty()) {
+                        sleepQuietly(IDLE_POLL_MS);
+                        continue;
+                    }
+                    for (String raw : batch) {
+                        deliver(raw);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Mail worker error: " + e.getMessage());
+                    sleepQuietly(1000);
+                }
+            }
+            closeTransport();
+        }
+
+        // Claims up to BATCH_SIZE messages into the shared processing set, stamped with the claim time
+        private List<String> takeBatch() {
+            List<String> batch = new ArrayList<>();
+            try (Jedis jedis = RedisConnection.getConnection()) {
+                Object claimed = jedis.eval(CLAIM_SCRIPT, List.of(OUTBOX_KEY, PROCESSING_KEY),
+                        List.of(String.valueOf(System.currentTimeMillis()), String.valueOf(BATCH_SIZE)));
+                for (Object raw : (List<?>) claimed) {
+                    batch.add((String) raw);
+                }
+            }
+            return batch;
+        }
+
+        private void deliver(String raw) {
+            OutboundMail mail;
+            try {
+                mail = objectMapper.readValue(raw, OutboundMail.class);
+            } catch (Exception e) {
+                System.err.println("Dropping malformed queued email: " + e.getMessage());
+                acknowledge(raw);
+                return;
+            }
+
+            if (!renewClaim(raw)) {
+                // Sat in this batch past the visibility timeout and was handed to another worker
+                return;
+            }
+
+            try {
+                Message message = buildOtpMessage(mail.to(), mail.otp());
+                connectedTransport().sendMessage(message, message.getAllRecipients());
+                acknowledge(raw);
+
+                long latency = System.currentTimeMillis() - mail.enqueuedAt();
+                sent.increment();
+                latencyTotalMs.add(latency);
+                latencyMaxMs.accumulateAndGet(latency, Math::max);
+                System.out.println("OTP email sent to: " + mail.to() + " (" + latency + " ms after enqueue)");
+            } catch (MessagingException e) {
+                // Connection may have been dropped by the server; reconnect on the next message
+                closeTransport();
+                scheduleRetry(raw, mail, e);
+            }
+        }
+
+        private boolean renewClaim(String raw) {
+            try (Jedis jedis = RedisConnection.getConnection()) {
+                Object renewed = jedis.eval(RENEW_SCRIPT, List.of(PROCESSING_KEY),
+                        List.of(String.valueOf(System.currentTimeMillis()), raw));
+                return Long.valueOf(1L).equals(renewed);
+            }
+        }
+
+        private Transport connectedTransport() throws MessagingException {
+            if (transport == null || !transport.isConnected()) {
+                transport = session.getTransport("smtp");
+                transport.connect(SMTP_HOST, Integer.parseInt(SMTP_PORT), SENDER_EMAIL, SENDER_PASSWORD);
+            }
+            return transport;
+        }
 
-        Transport.send(message);
-        System.out.println("OTP email sent to: " + recipientEmail);
+        private void closeTransport() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException ignored) {
+                    // Already closed or broken; a new connection is opened on demand
+                }
+                transport = null;
+            }
+        }
+
+        private void scheduleRetry(String raw, OutboundMail mail, Exception cause) {
+            int attempts = mail.attempts() + 1;
+            try (Jedis jedis = RedisConnection.getConnection()) {
+                jedis.zrem(PROCESSING_KEY, raw);
+                if (attempts >= MAX_ATTEMPTS) {
+                    failed.increment();
+                    System.err.println("Giving up on OTP email to " + mail.to() + " after " + attempts + " attempts: " + cause.getMessage());
+                    return;
+                }
+
+                // Exponential backoff with jitter
+                long backoff = BASE_BACKOFF_MS * (1L << (attempts - 1));
+                long dueAt = System.currentTimeMillis() + backoff + (long) (Math.random() * backoff / 2);
+                OutboundMail retry = new OutboundMail(mail.to(), mail.otp(), mail.enqueuedAt(), attempts);
+                jedis.zadd(RETRY_KEY, dueAt, objectMapper.writeValueAsString(retry));
+                retried.increment();
+                System.err.println("OTP email to " + mail.to() + " failed, retry " + attempts + " in " + backoff + " ms: " + cause.getMessage());
+            } catch (Exception e) {
+                System.err.println("Error scheduling email retry for " + mail.to() + ": " + e.getMessage());
+            }
+        }
+
+        private void acknowledge(String raw) {
+            try (Jedis jedis = RedisConnection.getConnection()) {
+                jedis.zrem(PROCESSING_KEY, raw);
+            }
+        }
+
+        // Moves retries whose backoff has elapsed back into the outbox; ZREM makes the claim atomic
+        private void promoteDueRetries() {
+            try (Jedis jedis = RedisConnection.getConnection()) {
+                List<String> due = jedis.zrangeByScore(RETRY_KEY, 0, System.currentTimeMillis(), 0, BATCH_SIZE);
+                for (String raw : due) {
+                    if (jedis.zrem(RETRY_KEY, raw) == 1) {
+                        jedis.lpush(OUTBOX_KEY, raw);
+                    }
+                }
+            }
+        }
+
+        private void sleepQuietly(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
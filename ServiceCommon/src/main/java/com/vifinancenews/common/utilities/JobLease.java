@@ -0,0 +1,37 @@
+package com.vifinancenews.common.utilities;
+
+/**
+ * Ownership of a scheduled job across replicas.
+ * Only the current holder should run the job; the fencing token increases with every new
+ * acquisition so writes made by a stale holder can be rejected.
+ */
+public interface JobLease {
+
+    /**
+     * Acquires the lease, or renews it if already held by this process.
+     *
+     * @return true if this process holds the lease after the call
+     */
+    boolean tryAcquire();
+
+    /**
+     * @return fencing token of the current holding, or 0 if the lease is not held
+     */
+    long fencingToken();
+
+    /**
+     * Gives up the lease if held, letting another replica take over immediately.
+     */
+    void release();
+
+    /**
+     * Wraps a task so it only runs on the replica currently holding the lease.
+     */
+    default Runnable guard(Runnable task) {
+        return () -> {
+            if (tryAcquire()) {
+                task.run();
+            }
+        };
+    }
+}
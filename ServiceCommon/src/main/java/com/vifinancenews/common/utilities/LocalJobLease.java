@@ -0,0 +1,27 @@
+package com.vifinancenews.common.utilities;
+
+/**
+ * Single-node lease: always held by this process. Intended for tests and local development.
+ */
+public class LocalJobLease implements JobLease {
+
+    private long token = 0;
+
+    @Override
+    public synchronized boolean tryAcquire() {
+        if (token == 0) {
+            token = 1;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized long fencingToken() {
+        return token;
+    }
+
+    @Override
+    public synchronized void release() {
+        token = 0;
+    }
+}
@@ -0,0 +1,105 @@
+package com.vifinancenews.common.utilities;
+
+import com.vifinancenews.common.daos.IdentifierDAO;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Failed-login counters and lockouts held in Redis.
+ * Failures are counted in a fixed window with an atomic INCR + PEXPIRE; the identifier table is only
+ * written (asynchronously) when a lockout actually triggers, so attack bursts do not become DB writes.
+ */
+public class LoginAttemptTracker {
+    private static final int MAX_FAILED_ATTEMPTS = 5;
+    private static final long FAILURE_WINDOW_MS = 15 * 60 * 1000L; // 15 minutes
+    private static final long LOCKOUT_MS = 15 * 60 * 1000L;        // 15 minutes
+
+    // KEYS[1] = failure counter, KEYS[2] = lock key; ARGV[1] = window ms, ARGV[2] = max attempts, ARGV[3] = lockout ms
+    // Returns {attempts, locked (1/0)}
+    private static final String RECORD_FAILURE_SCRIPT =
+            "local attempts = redis.call('INCR', KEYS[1]) " +
+            "if attempts == 1 then redis.call('PEXPIRE', KEYS[1], ARGV[1]) end " +
+            "if attempts >= tonumber(ARGV[2]) then " +
+            "  redis.call('SET', KEYS[2], attempts, 'PX', ARGV[3]) " +
+            "  redis.call('DEL', KEYS[1]) " +
+            "  return {attempts, 1} " +
+            "end " +
+            "return {attempts, 0}";
+
+    private static final ExecutorService dbWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lockout-db-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Records a failed attempt. When the limit is reached the email is locked in Redis and the
+     * lockout is persisted to the identifier table in the background.
+     *
+     * @return the lockout end time if this failure triggered a lockout, otherwise null
+     */
+    public static LocalDateTime recordFailure(String email) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            Object result = jedis.eval(RECORD_FAILURE_SCRIPT,
+                    List.of(formatFailureKey(email), formatLockKey(email)),
+                    List.of(String.valueOf(FAILURE_WINDOW_MS), String.valueOf(MAX_FAILED_ATTEMPTS), String.valueOf(LOCKOUT_MS)));
+
+            List<?> reply = (List<?>) result;
+            int attempts = ((Long) reply.get(0)).intValue();
+            boolean locked = (Long) reply.get(1) == 1L;
+            if (!locked) {
+                return null;
+            }
+
+            LocalDateTime lockoutUntil = LocalDateTime.now().plus(Duration.ofMillis(LOCKOUT_MS));
+            System.out.println("Account locked until " + lockoutUntil + " for: " + email);
+            dbWriter.execute(() -> {
+                try {
+                    IdentifierDAO.updateFailedAttempts(email, attempts, lockoutUntil);
+                } catch (Exception e) {
+                    System.err.println("Error persisting lockout for " + email + ": " + e.getMessage());
+                }
+            });
+            return lockoutUntil;
+        } catch (JedisException e) {
+            System.err.println("Redis error while recording failed login: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return when the Redis lockout for this email ends, or null if it is not locked
+     */
+    public static LocalDateTime getLockoutUntil(String email) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            long ttl = jedis.pttl(formatLockKey(email));
+            return ttl > 0 ? LocalDateTime.now().plus(Duration.ofMillis(ttl)) : null;
+        } catch (JedisException e) {
+            System.err.println("Redis error while checking lockout: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Clears the failure counter and any lockout after a successful login or password reset
+    public static void reset(String email) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.del(formatFailureKey(email), formatLockKey(email));
+        } catch (JedisException e) {
+            System.err.println("Redis error while resetting failed logins: " + e.getMessage());
+        }
+    }
+
+    private static String formatFailureKey(String email) {
+        return "login:fail:" + email.toLowerCase();
+    }
+
+    private static String formatLockKey(String email) {
+        return "login:lock:" + email.toLowerCase();
+    }
+}
@@ -1,8 +1,32 @@
 package com.vifinancenews.common.utilities;
 
+import io.github.cdimascio.dotenv.Dotenv;
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
 public class PasswordHash {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    // Dedicated BCrypt pool: sized to cores, bounded queue, rejects instead of queueing without limit
+    private static final int POOL_THREADS = Integer.parseInt(
+            dotenv.get("HASH_POOL_THREADS", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int QUEUE_CAPACITY = Integer.parseInt(
+            dotenv.get("HASH_QUEUE_CAPACITY", String.valueOf(POOL_THREADS * 8)));
+
+    private static final ThreadPoolExecutor hashingPool = createHashingPool();
+
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder waitTimeNanos = new LongAdder();
+    private static final LongAdder hashTimeNanos = new LongAdder();
 
     // Hash password using BCrypt
     public static String hashPassword(String plainPassword) {
@@ -13,4 +37,71 @@ public class PasswordHash {
     public static boolean verifyPassword(String plainPassword, String hashedPassword) {
         return BCrypt.checkpw(plainPassword, hashedPassword);
     }
+
+    // Hash on the hashing pool; fails with HashingRejectedException when the pool is saturated
+    public static CompletableFuture<String> hashPasswordAsync(String plainPassword) {
+        return submit(() -> hashPassword(plainPassword));
+    }
+
+    // Verify on the hashing pool; fails with HashingRejectedException when the pool is saturated
+    public static CompletableFuture<Boolean> verifyPasswordAsync(String plainPassword, String hashedPassword) {
+        return submit(() -> verifyPassword(plainPassword, hashedPassword));
+    }
+
+    public static HashingStats getStats() {
+        long done = completed.sum();
+        return new HashingStats(
+                hashingPool.getActiveCount(),
+                hashingPool.getQueue().size(),
+                QUEUE_CAPACITY,
+                done,
+                rejected.sum(),
+                done == 0 ? 0.0 : waitTimeNanos.sum() / (double) done / 1_000_000.0,
+                done == 0 ? 0.0 : hashTimeNanos.sum() / (double) done / 1_000_000.0
+        );
+    }
+
+    private static <T> CompletableFuture<T> submit(Supplier<T> work) {
+        long enqueued = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long started = System.nanoTime();
+                waitTimeNanos.add(started - enqueued);
+                try {
+                    return work.get();
+                } finally {
+                    hashTimeNanos.add(System.nanoTime() - started);
+                    completed.increment();
+                }
+            }, hashingPool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new HashingRejectedException());
+        }
+    }
+
+    private static ThreadPoolExecutor createHashingPool() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                POOL_THREADS, POOL_THREADS,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    public static record HashingStats(int active, int queueDepth, int queueCapacity, long completed,
+                                      long rejected, double avgWaitMs, double avgHashMs) {}
+
+    // Thrown (inside the returned future) when the hashing queue is full
+    public static class HashingRejectedException extends RuntimeException {
+        public HashingRejectedException() {
+            super("Password hashing capacity exceeded");
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package com.vifinancenews.common.utilities;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Cluster-wide token bucket backed by an atomic Redis script, with a local fast path.
+ * Each node leases a small batch of tokens from the shared bucket and spends them in-process,
+ * so most requests are decided without a network hop. Leases expire quickly to limit skew.
+ */
+public class RateLimiter {
+
+    // KEYS[1] = bucket; ARGV[1] = capacity, ARGV[2] = refill rate (tokens/ms), ARGV[3] = tokens requested
+    // Returns {granted, retryAfterMs}
+    private static final String TAKE_SCRIPT =
+            "local capacity = tonumber(ARGV[1]) " +
+            "local rate = tonumber(ARGV[2]) " +
+            "local requested = tonumber(ARGV[3]) " +
+            "local time = redis.call('TIME') " +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+            "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+            "local tokens = tonumber(bucket[1]) or capacity " +
+            "local ts = tonumber(bucket[2]) or now " +
+            "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) " +
+            "local granted = math.min(requested, math.floor(tokens)) " +
+            "tokens = tokens - granted " +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now)) " +
+            "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000) " +
+            "local retry = 0 " +
+            "if granted == 0 then retry = math.ceil((1 - tokens) / rate) end " +
+            "return {granted, retry}";
+
+    private static final long LEASE_TTL_MS = 1_000;
+
+    private final String name;
+    private final int capacity;
+    private final double refillPerMs;
+    private final int leaseSize;
+
+    // Local leases per key; Caffeine's striped map keeps contention and memory bounded
+    private final Cache<String, LocalLease> leases = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofMillis(LEASE_TTL_MS * 5))
+            .build();
+
+    /**
+     * @param name     bucket family, used in the Redis key
+     * @param capacity tokens per period (and maximum burst)
+     * @param period   time in which a full bucket refills
+     */
+    public RateLimiter(String name, int capacity, Duration period) {
+        this.name = name;
+        this.capacity = capacity;
+        this.refillPerMs = capacity / (double) period.toMillis();
+        // Small buckets are enforced token by token; larger ones lease up to 10% at a time
+        this.leaseSize = capacity < 20 ? 1 : Math.max(1, capacity / 10);
+    }
+
+    /**
+     * Takes one token for the given key.
+     *
+     * @return 0 if the request is allowed, otherwise the suggested wait in milliseconds
+     */
+    public long tryAcquire(String key) {
+        LocalLease lease = leases.get(key, k -> new LocalLease());
+        synchronized (lease) {
+            long now = System.currentTimeMillis();
+            if (lease.tokens > 0 && now < lease.expiresAt) {
+                lease.tokens--;
+                return 0;
+            }
+            if (now < lease.deniedUntil) {
+                return lease.deniedUntil - now;
+            }
+
+            long[] result = takeFromRedis(key);
+            if (result[0] > 0) {
+                lease.tokens = (int) result[0] - 1;
+                lease.expiresAt = now + LEASE_TTL_MS;
+                return 0;
+            }
+
+            // Remember the denial locally so repeat offenders never reach Redis until it lapses
+            lease.tokens = 0;
+            lease.deniedUntil = now + Math.max(1, result[1]);
+            return Math.max(1, result[1]);
+        }
+    }
+
+    private long[] takeFromRedis(String key) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            Object reply = jedis.eval(TAKE_SCRIPT,
+                    List.of("ratelimit:" + name + ":" + key),
+                    List.of(String.valueOf(capacity), String.valueOf(refillPerMs), String.valueOf(leaseSize)));
+            List<?> values = (List<?>) reply;
+            return new long[] { (Long) values.get(0), (Long) values.get(1) };
+        } catch (JedisException e) {
+            // Fail open: an unavailable Redis should not take authentication down with it
+            System.err.println("Redis error in rate limiter " + name + ": " + e.getMessage());
+            return new long[] { 1, 0 };
+        }
+    }
+
+    private static class LocalLease {
+        int tokens;
+        long expiresAt;
+        long deniedUntil;
+    }
+}
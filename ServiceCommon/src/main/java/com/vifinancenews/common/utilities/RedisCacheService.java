@@ -2,22 +2,58 @@ package com.vifinancenews.common.utilities;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
 import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public class RedisCacheService {
     private static final int OTP_EXPIRY_SECONDS = 300; // 5 minutes
-    private static final int USER_DATA_EXPIRY_SECONDS = 3600; // 1 hour
+    private static final int OTP_MAX_ATTEMPTS = 5; // wrong guesses before the code is invalidated
+    public static final int USER_DATA_EXPIRY_SECONDS = 3600; // 1 hour
+    private static final int SAVED_COUNT_EXPIRY_SECONDS = 60; // 1 minute
+    private static final int MISSING_USER_EXPIRY_SECONDS = 5; // only bridges replicas waiting on the same load
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Compare, delete and count attempts in one atomic call.
+    // KEYS[1] = otp key, KEYS[2] = attempts key; ARGV[1] = input code, ARGV[2] = max attempts
+    // Returns 1 = verified, 0 = wrong code, -1 = missing/expired, -2 = invalidated after too many attempts
+    private static final String VERIFY_OTP_SCRIPT =
+            "local stored = redis.call('GET', KEYS[1]) " +
+            "if not stored then return -1 end " +
+            "if stored == ARGV[1] then " +
+            "  redis.call('DEL', KEYS[1], KEYS[2]) " +
+            "  return 1 " +
+            "end " +
+            "local attempts = redis.call('INCR', KEYS[2]) " +
+            "if attempts == 1 then " +
+            "  local ttl = redis.call('PTTL', KEYS[1]) " +
+            "  if ttl > 0 then redis.call('PEXPIRE', KEYS[2], ttl) end " +
+            "end " +
+            "if attempts >= tonumber(ARGV[2]) then " +
+            "  redis.call('DEL', KEYS[1], KEYS[2]) " +
+            "  return -2 " +
+            "end " +
+            "return 0";
+
     // === OTP METHODS ===
 
     public static void storeOTP(String email, String otp) {
         try (Jedis jedis = RedisConnection.getConnection()) {
             String key = formatOtpKey(email);
-            jedis.setex(key, OTP_EXPIRY_SECONDS, otp);
+            // New code, fresh guess budget
+            Transaction tx = jedis.multi();
+            tx.setex(key, OTP_EXPIRY_SECONDS, otp);
+            tx.del(formatOtpAttemptsKey(email));
+            tx.exec();
             System.out.println("OTP stored in Redis for: " + email);
         } catch (JedisException e) {
             System.err.println("Redis error while storing OTP: " + e.getMessage());
@@ -25,21 +61,25 @@ public class RedisCacheService {
     }
 
     public static boolean verifyOTP(String email, String inputOTP) {
+        if (inputOTP == null) return false;
+
         try (Jedis jedis = RedisConnection.getConnection()) {
-            String key = formatOtpKey(email);
-            String storedOTP = jedis.get(key);
-            if (storedOTP == null) {
-                System.out.println("OTP expired or not found for: " + email);
-                return false;
-            }
+            Object result = jedis.eval(VERIFY_OTP_SCRIPT,
+                    List.of(formatOtpKey(email), formatOtpAttemptsKey(email)),
+                    List.of(inputOTP, String.valueOf(OTP_MAX_ATTEMPTS)));
+            long status = result instanceof Long ? (Long) result : 0L;
 
-            if (storedOTP.equals(inputOTP)) {
-                jedis.del(key);
+            if (status == 1) {
                 System.out.println("OTP verified and deleted for: " + email);
                 return true;
             }
-
-            System.out.println("Invalid OTP for: " + email);
+            if (status == -1) {
+                System.out.println("OTP expired or not found for: " + email);
+            } else if (status == -2) {
+                System.out.println("OTP invalidated after too many attempts for: " + email);
+            } else {
+                System.out.println("Invalid OTP for: " + email);
+            }
             return false;
         } catch (JedisException e) {
             System.err.println("Redis error while verifying OTP: " + e.getMessage());
@@ -49,7 +89,7 @@ public class RedisCacheService {
 
     public static void clearOTP(String email) {
         try (Jedis jedis = RedisConnection.getConnection()) {
-            jedis.del(formatOtpKey(email));
+            jedis.del(formatOtpKey(email), formatOtpAttemptsKey(email));
         }
     }
 
@@ -58,26 +98,13 @@ public class RedisCacheService {
     public static void cacheUserData(String userId, Map<String, String> userData) {
         try (Jedis jedis = RedisConnection.getConnection()) {
             String key = formatUserKey(userId);
-    
-            // Handle empty fields by replacing null with an empty string
-            Map<String, String> cleanedData = new HashMap<>();
-            for (Map.Entry<String, String> entry : userData.entrySet()) {
-                String value = entry.getValue();
-                
-                // Replace null values with empty strings for avatarLink and bio
-                if (value == null) {
-                    if (entry.getKey().equals("avatarLink") || entry.getKey().equals("bio")) {
-                        cleanedData.put(entry.getKey(), ""); // Replace with empty string
-                    }
-                } else {
-                    cleanedData.put(entry.getKey(), value); // Keep the non-null value
-                }
-            }
-    
-            // Store each field as a Redis hash
-            jedis.hset(key, cleanedData);
-            jedis.expire(key, USER_DATA_EXPIRY_SECONDS);
-    
+
+            // HSET and EXPIRE go out together as one MULTI/EXEC round trip
+            Transaction tx = jedis.multi();
+            tx.hset(key, withoutNulls(userData));
+            tx.expire(key, USER_DATA_EXPIRY_SECONDS);
+            tx.exec();
+
             System.out.println("User data successfully cached for: " + userId);
         } catch (Exception e) {
             System.err.println("Error while caching user data for userId: " + userId + ", data: " + userData);
@@ -104,6 +131,32 @@ public class RedisCacheService {
             return null;
         }
     }
+
+    // Fetches many users' cached data in one pipeline; users without a cache entry are left out
+    public static Map<String, Map<String, String>> getCachedUserDataBatch(Collection<String> userIds) {
+        Map<String, Map<String, String>> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) return result;
+
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, Response<Map<String, String>>> responses = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                responses.put(userId, pipeline.hgetAll(formatUserKey(userId)));
+            }
+            pipeline.sync();
+
+            for (Map.Entry<String, Response<Map<String, String>>> entry : responses.entrySet()) {
+                Map<String, String> userData = entry.getValue().get();
+                if (userData != null && !userData.isEmpty()) {
+                    result.put(entry.getKey(), userData);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error while retrieving user data batch of size: " + userIds.size());
+            e.printStackTrace();
+        }
+        return result;
+    }
     
 
     public static void clearUserData(String userId) {
@@ -112,13 +165,154 @@ public class RedisCacheService {
         }
     }
 
+    // Short-lived "no such account" marker, so replicas waiting on another replica's load stop polling
+    public static void markUserMissing(String userId) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.setex(formatMissingUserKey(userId), MISSING_USER_EXPIRY_SECONDS, "1");
+        } catch (JedisException e) {
+            System.err.println("Redis error while marking missing user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    public static boolean isUserMarkedMissing(String userId) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            return jedis.exists(formatMissingUserKey(userId));
+        } catch (JedisException e) {
+            System.err.println("Redis error while checking missing user " + userId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // === SAVED ARTICLE COUNT METHODS ===
+
+    public static void cacheSavedArticleCount(String userId, int count) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.setex(formatSavedCountKey(userId), SAVED_COUNT_EXPIRY_SECONDS, String.valueOf(count));
+        } catch (JedisException e) {
+            System.err.println("Redis error while caching saved article count: " + e.getMessage());
+        }
+    }
+
+    public static Integer getCachedSavedArticleCount(String userId) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            String value = jedis.get(formatSavedCountKey(userId));
+            return value != null ? Integer.valueOf(value) : null;
+        } catch (JedisException | NumberFormatException e) {
+            System.err.println("Error while reading saved article count for userId: " + userId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // === JOB CHECKPOINT METHODS ===
+
+    // Stores the checkpoint only if fencingToken is not older than the last token that wrote it
+    public static boolean storeCheckpoint(String jobName, String value, long fencingToken) {
+        String script =
+                "local current = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+                "if tonumber(ARGV[2]) < current then return 0 end " +
+                "redis.call('SET', KEYS[1], ARGV[1]) " +
+                "redis.call('SET', KEYS[2], ARGV[2]) " +
+                "return 1";
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            String key = formatCheckpointKey(jobName);
+            Object result = jedis.eval(script, List.of(key, key + ":fence"), List.of(value, String.valueOf(fencingToken)));
+            if (!(result instanceof Long) || (Long) result != 1L) {
+                System.out.println("Rejected stale checkpoint write for " + jobName + " (token " + fencingToken + ")");
+                return false;
+            }
+            return true;
+        } catch (JedisException e) {
+            System.err.println("Redis error while storing checkpoint for " + jobName + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static String getCheckpoint(String jobName) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            return jedis.get(formatCheckpointKey(jobName));
+        } catch (JedisException e) {
+            System.err.println("Redis error while reading checkpoint for " + jobName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // === SHORT-LIVED LOCKS ===
+
+    // Takes a lock that expires on its own; returns the owner token, or null if someone else holds it
+    public static String tryLock(String name, long ttlMillis) {
+        String token = UUID.randomUUID().toString();
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            String reply = jedis.set(formatLockKey(name), token, SetParams.setParams().nx().px(ttlMillis));
+            return "OK".equals(reply) ? token : null;
+        } catch (JedisException e) {
+            // Without Redis there is nothing to coordinate with; let the caller proceed
+            System.err.println("Redis error while taking lock " + name + ": " + e.getMessage());
+            return token;
+        }
+    }
+
+    // Releases the lock only if this caller still owns it
+    public static void unlock(String name, String token) {
+        String script =
+                "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+                "return 0";
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.eval(script, List.of(formatLockKey(name)), List.of(token));
+        } catch (JedisException e) {
+            System.err.println("Redis error while releasing lock " + name + ": " + e.getMessage());
+        }
+    }
+
+    // Replace null avatarLink/bio with empty strings and drop other nulls; copies only when needed
+    static Map<String, String> withoutNulls(Map<String, String> userData) {
+        boolean hasNull = false;
+        for (String value : userData.values()) {
+            if (value == null) {
+                hasNull = true;
+                break;
+            }
+        }
+        if (!hasNull) return userData;
+
+        Map<String, String> cleanedData = new HashMap<>();
+        for (Map.Entry<String, String> entry : userData.entrySet()) {
+            String value = entry.getValue();
+            if (value != null) {
+                cleanedData.put(entry.getKey(), value);
+            } else if (entry.getKey().equals("avatarLink") || entry.getKey().equals("bio")) {
+                cleanedData.put(entry.getKey(), "");
+            }
+        }
+        return cleanedData;
+    }
+
     // === KEY HELPERS ===
 
     private static String formatOtpKey(String email) {
         return "otp:" + email.replace("@", "_").replace(".", "_");
     }
 
+    private static String formatOtpAttemptsKey(String email) {
+        return formatOtpKey(email) + ":attempts";
+    }
+
     private static String formatUserKey(String userId) {
         return "user:" + userId;
     }
+
+    private static String formatMissingUserKey(String userId) {
+        return "user_missing:" + userId;
+    }
+
+    private static String formatSavedCountKey(String userId) {
+        return "saved_count:" + userId;
+    }
+
+    private static String formatCheckpointKey(String jobName) {
+        return "checkpoint:" + jobName;
+    }
+
+    private static String formatLockKey(String name) {
+        return "lock:" + name;
+    }
 }
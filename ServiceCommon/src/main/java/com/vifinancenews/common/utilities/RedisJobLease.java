@@ -0,0 +1,98 @@
+package com.vifinancenews.common.utilities;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Redis-backed lease with fencing tokens.
+ * The lease key expires after ttlMillis unless the holder renews it, so a dead replica is
+ * replaced automatically on the next acquisition attempt by another replica.
+ */
+public class RedisJobLease implements JobLease {
+
+    // KEYS[1] = lease key, KEYS[2] = fence counter; ARGV[1] = owner id, ARGV[2] = ttl (ms)
+    private static final String ACQUIRE_SCRIPT =
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+            "  local token = redis.call('INCR', KEYS[2]) " +
+            "  redis.call('SET', KEYS[1], ARGV[1] .. ':' .. token, 'PX', ARGV[2]) " +
+            "  return token " +
+            "end " +
+            "return 0";
+
+    // KEYS[1] = lease key; ARGV[1] = expected holder value, ARGV[2] = ttl (ms)
+    private static final String RENEW_SCRIPT =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0";
+
+    // KEYS[1] = lease key; ARGV[1] = expected holder value
+    private static final String RELEASE_SCRIPT =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('DEL', KEYS[1]) " +
+            "end " +
+            "return 0";
+
+    private final String leaseKey;
+    private final String fenceKey;
+    private final String ownerId = UUID.randomUUID().toString();
+    private final long ttlMillis;
+
+    private long token = 0;
+
+    public RedisJobLease(String name, long ttlMillis) {
+        this.leaseKey = "lease:" + name;
+        this.fenceKey = "lease:" + name + ":fence";
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public synchronized boolean tryAcquire() {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            if (token > 0) {
+                Object renewed = jedis.eval(RENEW_SCRIPT, List.of(leaseKey), List.of(holderValue(), String.valueOf(ttlMillis)));
+                if (renewed instanceof Long && (Long) renewed == 1L) {
+                    return true;
+                }
+                System.out.println("Lease lost: " + leaseKey + " (token " + token + ")");
+                token = 0;
+            }
+
+            Object acquired = jedis.eval(ACQUIRE_SCRIPT, List.of(leaseKey, fenceKey), List.of(ownerId, String.valueOf(ttlMillis)));
+            if (acquired instanceof Long && (Long) acquired > 0) {
+                token = (Long) acquired;
+                System.out.println("Lease acquired: " + leaseKey + " (token " + token + ")");
+                return true;
+            }
+            return false;
+        } catch (JedisException e) {
+            System.err.println("Redis error while acquiring lease " + leaseKey + ": " + e.getMessage());
+            token = 0;
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized long fencingToken() {
+        return token;
+    }
+
+    @Override
+    public synchronized void release() {
+        if (token == 0) return;
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.eval(RELEASE_SCRIPT, List.of(leaseKey), List.of(holderValue()));
+        } catch (JedisException e) {
+            System.err.println("Redis error while releasing lease " + leaseKey + ": " + e.getMessage());
+        } finally {
+            token = 0;
+        }
+    }
+
+    private String holderValue() {
+        return ownerId + ":" + token;
+    }
+}
@@ -1,24 +1,62 @@
 package com.vifinancenews.common.utilities;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vifinancenews.common.models.SessionData;
+import io.github.cdimascio.dotenv.Dotenv;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.params.ZAddParams;
+import redis.clients.jedis.resps.Tuple;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public class RedisSessionManager {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final int SESSION_TTL = 3600; // 1 hour
+    private static final Dotenv dotenv = Dotenv.load();
 
-    private static String sessionKey(String sessionId) {
-        return "session:" + sessionId;
+    // Idle timeout: a session expires this long after its last touch
+    private static final int SESSION_TTL = Integer.parseInt(dotenv.get("SESSION_IDLE_TTL_SECONDS", "3600")); // 1 hour
+    // Absolute lifetime: no amount of activity keeps a session alive past this; also the cookie max-age
+    public static final int SESSION_MAX_LIFETIME = Integer.parseInt(dotenv.get("SESSION_MAX_LIFETIME_SECONDS", "86400")); // 24 hours
+    // At most one EXPIRE per session per interval on this node
+    private static final long TOUCH_INTERVAL_SECONDS = Long.parseLong(dotenv.get("SESSION_TOUCH_INTERVAL_SECONDS", "60"));
+
+    private static final Cache<String, Boolean> recentlyTouched = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofSeconds(TOUCH_INTERVAL_SECONDS))
+            .build();
+
+    // WATCH/MULTI rounds before log-out-everywhere gives up on a user whose index keeps changing
+    private static final int DESTROY_ALL_ATTEMPTS = 5;
+
+    private static byte[] sessionKey(String sessionId) {
+        return ("session:" + sessionId).getBytes(StandardCharsets.UTF_8);
     }
 
-    public static String createSession(Map<String, Object> sessionData) {
+    // Sorted set of a user's session ids, scored by creation time (epoch millis)
+    private static String userIndexKey(String userId) {
+        return "user_sessions:" + userId;
+    }
+
+    public static String createSession(SessionData sessionData) {
         try (Jedis jedis = RedisConnection.getConnection()) {
             String sessionId = UUID.randomUUID().toString();
-            String json = objectMapper.writeValueAsString(sessionData);
-            jedis.setex(sessionKey(sessionId), SESSION_TTL, json);
+            String indexKey = userIndexKey(sessionData.userId());
+
+            Transaction tx = jedis.multi();
+            tx.setex(sessionKey(sessionId), ttlFor(sessionData.createdAt()), SessionCodec.encode(sessionData));
+            tx.zadd(indexKey, sessionData.createdAt(), sessionId);
+            // Members past the absolute lifetime can no longer exist; trim them while we are here
+            tx.zremrangeByScore(indexKey, 0, lifetimeCutoff());
+            tx.expire(indexKey, SESSION_MAX_LIFETIME);
+            tx.exec();
+            recentlyTouched.put(sessionId, Boolean.TRUE);
             return sessionId;
         } catch (Exception e) {
             e.printStackTrace();
@@ -26,31 +64,179 @@ public class RedisSessionManager {
         }
     }
 
-    public static Map<String, Object> getSession(String sessionId) {
+    public static SessionData getSession(String sessionId) {
+        if (sessionId == null) return null;
         try (Jedis jedis = RedisConnection.getConnection()) {
-            String json = jedis.get(sessionKey(sessionId));
-            if (json == null) return null;
-            return objectMapper.readValue(json, Map.class);
+            byte[] key = sessionKey(sessionId);
+            SessionData session = SessionCodec.decode(jedis.get(key));
+            if (session != null && !slideIfDue(jedis, key, sessionId, session)) {
+                return null;
+            }
+            return session;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
-    public static void updateSession(String sessionId, Map<String, Object> sessionData) {
+    // Hot path for authentication: only the userId field is decoded (plus createdAt when a touch is due)
+    public static String getSessionUserId(String sessionId) {
+        if (sessionId == null) return null;
         try (Jedis jedis = RedisConnection.getConnection()) {
-            String json = objectMapper.writeValueAsString(sessionData);
-            jedis.setex(sessionKey(sessionId), SESSION_TTL, json);
+            byte[] key = sessionKey(sessionId);
+            byte[] value = jedis.get(key);
+            String userId = SessionCodec.decodeUserId(value);
+            if (userId != null && isTouchDue(sessionId)
+                    && !slide(jedis, key, sessionId, SessionCodec.decode(value))) {
+                return null;
+            }
+            return userId;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static void updateSession(String sessionId, SessionData sessionData) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            int ttl = ttlFor(sessionData.createdAt());
+            if (ttl <= 0) {
+                jedis.del(sessionKey(sessionId));
+                return;
+            }
+            jedis.setex(sessionKey(sessionId), ttl, SessionCodec.encode(sessionData));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     public static void destroySession(String sessionId) {
+        if (sessionId == null) return;
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            byte[] key = sessionKey(sessionId);
+            String userId = SessionCodec.decodeUserId(jedis.get(key));
+            jedis.del(key);
+            if (userId != null) {
+                jedis.zrem(userIndexKey(userId), sessionId);
+            }
+            recentlyTouched.invalidate(sessionId);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Logs the user out everywhere; returns how many sessions were removed. The index is read under
+     * WATCH and the session keys plus the index are deleted in one MULTI, so a session created in
+     * between aborts the round and is picked up by the next one.
+     */
+    public static int destroyAllSessions(String userId) {
+        String indexKey = userIndexKey(userId);
         try (Jedis jedis = RedisConnection.getConnection()) {
-            jedis.del(sessionKey(sessionId));
+            for (int attempt = 1; attempt <= DESTROY_ALL_ATTEMPTS; attempt++) {
+                jedis.watch(indexKey);
+                List<String> sessionIds = jedis.zrange(indexKey, 0, -1);
+
+                Transaction tx = jedis.multi();
+                for (String sessionId : sessionIds) {
+                    tx.del(sessionKey(sessionId));
+                }
+                tx.del(indexKey);
+                if (tx.exec() != null) {
+                    sessionIds.forEach(recentlyTouched::invalidate);
+                    System.out.println("Destroyed " + sessionIds.size() + " sessions for userId: " + userId);
+                    return sessionIds.size();
+                }
+            }
+            System.err.println("Session index for userId " + userId + " kept changing; gave up after "
+                    + DESTROY_ALL_ATTEMPTS + " attempts");
+            return 0;
         } catch (Exception e) {
             e.printStackTrace();
+            return 0;
         }
     }
+
+    /**
+     * Lists the user's live sessions, oldest first. Index members whose session key has already
+     * expired (idle timeout) are removed as a side effect, which keeps the index bounded.
+     */
+    public static List<ActiveSession> listSessions(String userId) {
+        List<ActiveSession> sessions = new ArrayList<>();
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            String indexKey = userIndexKey(userId);
+            jedis.zremrangeByScore(indexKey, 0, lifetimeCutoff());
+            List<Tuple> members = jedis.zrangeWithScores(indexKey, 0, -1);
+            if (members.isEmpty()) return sessions;
+
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<Long>> ttls = new ArrayList<>(members.size());
+            for (Tuple member : members) {
+                ttls.add(pipeline.ttl(sessionKey(member.getElement())));
+            }
+            pipeline.sync();
+
+            List<String> stale = new ArrayList<>();
+            for (int i = 0; i < members.size(); i++) {
+                String sessionId = members.get(i).getElement();
+                long ttl = ttls.get(i).get();
+                if (ttl == -2) {
+                    stale.add(sessionId);
+                } else {
+                    sessions.add(new ActiveSession(sessionId, (long) members.get(i).getScore(), ttl));
+                }
+            }
+            if (!stale.isEmpty()) {
+                jedis.zrem(indexKey, stale.toArray(new String[0]));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return sessions;
+    }
+
+    public static record ActiveSession(String sessionId, long createdAt, long expiresInSeconds) {}
+
+    // Claims the touch slot for this session; only the first caller per interval gets true
+    private static boolean isTouchDue(String sessionId) {
+        return recentlyTouched.asMap().putIfAbsent(sessionId, Boolean.TRUE) == null;
+    }
+
+    private static boolean slideIfDue(Jedis jedis, byte[] key, String sessionId, SessionData session) {
+        return !isTouchDue(sessionId) || slide(jedis, key, sessionId, session);
+    }
+
+    /**
+     * Extends the idle TTL, capped at the absolute lifetime; false if the session has outlived it.
+     * The same round trip adds the session to its user's index (ZADD NX), so sessions created before
+     * the index existed are covered by destroyAllSessions from their first touch on.
+     */
+    private static boolean slide(Jedis jedis, byte[] key, String sessionId, SessionData session) {
+        // Legacy JSON sessions carry no creation time; they are not extended and simply run out
+        long createdAt = session.createdAt();
+        if (createdAt <= 0) return true;
+
+        int ttl = ttlFor(createdAt);
+        if (ttl <= 0) {
+            jedis.del(key);
+            return false;
+        }
+        String indexKey = userIndexKey(session.userId());
+        Pipeline pipeline = jedis.pipelined();
+        pipeline.expire(key, ttl);
+        pipeline.zadd(indexKey, createdAt, sessionId, ZAddParams.zAddParams().nx());
+        pipeline.expire(indexKey, SESSION_MAX_LIFETIME);
+        pipeline.sync();
+        return true;
+    }
+
+    private static long lifetimeCutoff() {
+        return System.currentTimeMillis() - SESSION_MAX_LIFETIME * 1000L;
+    }
+
+    private static int ttlFor(long createdAt) {
+        if (createdAt <= 0) return SESSION_TTL;
+        long remaining = SESSION_MAX_LIFETIME - (System.currentTimeMillis() - createdAt) / 1000;
+        return (int) Math.min(SESSION_TTL, remaining);
+    }
 }
@@ -0,0 +1,83 @@
+package com.vifinancenews.common.utilities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vifinancenews.common.models.SessionData;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for sessions stored in Redis.
+ *
+ * Layout (version 1): [version:1][userId length:2][userId UTF-8][createdAt:8]
+ * userId comes first so it can be read without decoding the rest of the record.
+ * Values starting with '{' are sessions written by the old JSON format and are still accepted.
+ */
+class SessionCodec {
+    private static final byte VERSION_1 = 1;
+    private static final byte JSON_MARKER = '{';
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static byte[] encode(SessionData session) {
+        byte[] userId = session.userId().getBytes(StandardCharsets.UTF_8);
+        if (userId.length > 0xFFFF) {
+            throw new IllegalArgumentException("userId too long for session encoding");
+        }
+        return ByteBuffer.allocate(1 + 2 + userId.length + 8)
+                .put(VERSION_1)
+                .putShort((short) userId.length)
+                .put(userId)
+                .putLong(session.createdAt())
+                .array();
+    }
+
+    static SessionData decode(byte[] value) {
+        if (value == null || value.length == 0) return null;
+        if (value[0] == JSON_MARKER) return decodeLegacyJson(value);
+        if (value[0] != VERSION_1) {
+            throw new IllegalArgumentException("Unknown session encoding version: " + value[0]);
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(value, 1, value.length - 1);
+            int length = Short.toUnsignedInt(buffer.getShort());
+            String userId = new String(value, buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return new SessionData(userId, buffer.getLong());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Truncated session record", e);
+        }
+    }
+
+    // Reads only the userId field; the rest of the record is never touched
+    static String decodeUserId(byte[] value) {
+        if (value == null || value.length == 0) return null;
+        if (value[0] == JSON_MARKER) {
+            SessionData legacy = decodeLegacyJson(value);
+            return legacy != null ? legacy.userId() : null;
+        }
+        if (value[0] != VERSION_1 || value.length < 3) {
+            throw new IllegalArgumentException("Unreadable session record");
+        }
+
+        int length = ((value[1] & 0xFF) << 8) | (value[2] & 0xFF);
+        if (value.length < 3 + length) {
+            throw new IllegalArgumentException("Truncated session record");
+        }
+        return new String(value, 3, length, StandardCharsets.UTF_8);
+    }
+
+    // Sessions created before the binary format: {"userId": "..."} with no creation time
+    private static SessionData decodeLegacyJson(byte[] value) {
+        try {
+            Map<?, ?> map = objectMapper.readValue(value, Map.class);
+            Object userId = map.get("userId");
+            return userId instanceof String id ? new SessionData(id, 0L) : null;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed legacy session", e);
+        }
+    }
+}
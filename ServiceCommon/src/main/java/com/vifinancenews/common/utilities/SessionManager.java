@@ -0,0 +1,74 @@
+package com.vifinancenews.common.utilities;
+
+import com.vifinancenews.common.models.SessionData;
+import com.vifinancenews.common.utilities.SessionTokenManager.TokenClaims;
+import io.github.cdimascio.dotenv.Dotenv;
+import io.javalin.http.Context;
+
+/**
+ * Session entry point for both services. SESSION_MODE picks the backend per deployment:
+ * "redis" (default) keeps server-side sessions in Redis; "token" issues stateless signed
+ * tokens that any replica verifies without a network hop.
+ */
+public class SessionManager {
+    public static final String COOKIE_NAME = "SESSION_ID";
+
+    private static final boolean TOKEN_MODE = Dotenv.load().get("SESSION_MODE", "redis").equalsIgnoreCase("token");
+
+    // Starts background work the selected mode needs (the revocation listener in token mode)
+    public static void start() {
+        if (TOKEN_MODE) {
+            SessionTokenManager.startRevocationListener();
+        }
+        System.out.println("Session mode: " + (TOKEN_MODE ? "token" : "redis"));
+    }
+
+    // Starts a session for the user and sets the cookie
+    public static void open(Context ctx, String userId) {
+        String value = TOKEN_MODE
+                ? SessionTokenManager.issue(userId)
+                : RedisSessionManager.createSession(SessionData.forUser(userId));
+        // Cookie lives for the absolute lifetime; the idle timeout / token expiry is enforced server-side
+        ctx.cookie(COOKIE_NAME, value, RedisSessionManager.SESSION_MAX_LIFETIME);
+    }
+
+    /**
+     * Resolves the session cookie to a userId. In token mode a token past half its lifetime is
+     * reissued on the response.
+     *
+     * @return the userId, or null if there is no valid session
+     */
+    public static String resolveUserId(Context ctx) {
+        String value = ctx.cookie(COOKIE_NAME);
+        if (value == null) return null;
+        if (!TOKEN_MODE) return RedisSessionManager.getSessionUserId(value);
+
+        TokenClaims claims = SessionTokenManager.verify(value);
+        if (claims == null) return null;
+        if (SessionTokenManager.isRefreshDue(claims)) {
+            ctx.cookie(COOKIE_NAME, SessionTokenManager.refresh(claims), RedisSessionManager.SESSION_MAX_LIFETIME);
+        }
+        return claims.userId();
+    }
+
+    // Logout: ends the current session and clears the cookie
+    public static void close(Context ctx) {
+        String value = ctx.cookie(COOKIE_NAME);
+        if (value == null) return;
+        if (TOKEN_MODE) {
+            SessionTokenManager.revoke(value);
+        } else {
+            RedisSessionManager.destroySession(value);
+        }
+        ctx.removeCookie(COOKIE_NAME);
+    }
+
+    // Ends every session the user has, on all devices
+    public static void closeAll(String userId) {
+        if (TOKEN_MODE) {
+            SessionTokenManager.revokeAll(userId);
+        } else {
+            RedisSessionManager.destroyAllSessions(userId);
+        }
+    }
+}
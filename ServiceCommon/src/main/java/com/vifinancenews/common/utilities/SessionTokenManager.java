@@ -0,0 +1,263 @@
+package com.vifinancenews.common.utilities;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stateless session tokens: HMAC-SHA256 signed, short-lived, verified locally by any replica.
+ *
+ * Token: base64url(payload) "." base64url(signature), where the payload (version 1) is
+ * [version:1][tokenId:16][createdAt:8][expiresAt:8][userId length:2][userId UTF-8].
+ *
+ * Revocations live in a Redis sorted set (member scored by when it can be forgotten) and are
+ * mirrored into a local bloom filter kept current over pub/sub. Only bloom hits go to Redis.
+ */
+public class SessionTokenManager {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private static final String REVOCATION_KEY = "session:revocations";
+    private static final String REVOCATION_CHANNEL = "session:revoked";
+    private static final byte VERSION_1 = 1;
+
+    // Token lifetime; tokens are reissued on activity once half of it has passed
+    private static final long TOKEN_TTL_MS = Long.parseLong(dotenv.get("SESSION_TOKEN_TTL_SECONDS", "900")) * 1000L; // 15 minutes
+    private static final long MAX_LIFETIME_MS = RedisSessionManager.SESSION_MAX_LIFETIME * 1000L;
+    private static final int BLOOM_CAPACITY = Integer.parseInt(dotenv.get("SESSION_REVOCATION_BLOOM_CAPACITY", "100000"));
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final byte[] SECRET;
+    private static final ThreadLocal<Mac> mac = ThreadLocal.withInitial(SessionTokenManager::createMac);
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    private static volatile BloomFilter revoked = new BloomFilter(BLOOM_CAPACITY, BLOOM_FALSE_POSITIVE_RATE);
+    private static volatile BloomFilter rebuilding;
+    private static Thread listener;
+
+    static {
+        String secret = dotenv.get("SESSION_TOKEN_SECRET");
+        if (secret == null || secret.length() < 32) {
+            throw new RuntimeException("SESSION_TOKEN_SECRET must be set (at least 32 characters) for token sessions.");
+        }
+        SECRET = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static record TokenClaims(UUID tokenId, String userId, long createdAt, long expiresAt) {}
+
+    public static String issue(String userId) {
+        return sign(UUID.randomUUID(), userId, System.currentTimeMillis());
+    }
+
+    // Same tokenId and createdAt with a fresh expiry, so revocation and the absolute lifetime still apply
+    public static String refresh(TokenClaims claims) {
+        return sign(claims.tokenId(), claims.userId(), claims.createdAt());
+    }
+
+    // Reissue once half the token lifetime has passed, unless the absolute lifetime caps it anyway
+    public static boolean isRefreshDue(TokenClaims claims) {
+        long now = System.currentTimeMillis();
+        return claims.expiresAt() - now < TOKEN_TTL_MS / 2
+                && claims.expiresAt() < claims.createdAt() + MAX_LIFETIME_MS;
+    }
+
+    /**
+     * @return the token's claims, or null if it is malformed, forged, expired or revoked
+     */
+    public static TokenClaims verify(String token) {
+        TokenClaims claims = parse(token);
+        if (claims == null || System.currentTimeMillis() >= claims.expiresAt()) return null;
+        return isRevoked(claims) ? null : claims;
+    }
+
+    // Logout: revokes this token (and every refresh of it)
+    public static void revoke(String token) {
+        TokenClaims claims = parse(token);
+        if (claims == null) return;
+        addRevocation(tokenMember(claims.tokenId()), claims.createdAt() + MAX_LIFETIME_MS);
+    }
+
+    // Log out everywhere: revokes every token for the user created up to now
+    public static void revokeAll(String userId) {
+        addRevocation(userMember(userId), System.currentTimeMillis() + MAX_LIFETIME_MS);
+    }
+
+    /**
+     * Starts the subscriber that mirrors revocations from other replicas into the local filter.
+     * The filter is rebuilt from Redis on every (re)subscribe and hourly, dropping expired entries.
+     */
+    public static synchronized void startRevocationListener() {
+        if (listener != null) return;
+
+        listener = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try (Jedis jedis = RedisConnection.getConnection()) {
+                    jedis.subscribe(new JedisPubSub() {
+                        @Override
+                        public void onSubscribe(String channel, int subscribedChannels) {
+                            reloadRevocations();
+                        }
+
+                        @Override
+                        public void onMessage(String channel, String member) {
+                            remember(member);
+                        }
+                    }, REVOCATION_CHANNEL);
+                } catch (Exception e) {
+                    System.err.println("Session revocation listener error: " + e.getMessage());
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "session-revocation-listener");
+        listener.setDaemon(true);
+        listener.start();
+
+        ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-revocation-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuilder.scheduleWithFixedDelay(SessionTokenManager::reloadRevocations, 1, 1, TimeUnit.HOURS);
+        System.out.println("Session revocation listener started on channel: " + REVOCATION_CHANNEL);
+    }
+
+    private static String sign(UUID tokenId, String userId, long createdAt) {
+        long expiresAt = Math.min(System.currentTimeMillis() + TOKEN_TTL_MS, createdAt + MAX_LIFETIME_MS);
+        byte[] user = userId.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = ByteBuffer.allocate(1 + 16 + 8 + 8 + 2 + user.length)
+                .put(VERSION_1)
+                .putLong(tokenId.getMostSignificantBits())
+                .putLong(tokenId.getLeastSignificantBits())
+                .putLong(createdAt)
+                .putLong(expiresAt)
+                .putShort((short) user.length)
+                .put(user)
+                .array();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(mac.get().doFinal(payload));
+    }
+
+    private static TokenClaims parse(String token) {
+        if (token == null) return null;
+        int dot = token.indexOf('.');
+        if (dot <= 0) return null;
+
+        try {
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            // Constant-time comparison so the signature cannot be guessed byte by byte
+            if (!MessageDigest.isEqual(mac.get().doFinal(payload), signature)) return null;
+
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            if (buffer.get() != VERSION_1) return null;
+            UUID tokenId = new UUID(buffer.getLong(), buffer.getLong());
+            long createdAt = buffer.getLong();
+            long expiresAt = buffer.getLong();
+            byte[] user = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(user);
+            return new TokenClaims(tokenId, new String(user, StandardCharsets.UTF_8), createdAt, expiresAt);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private static boolean isRevoked(TokenClaims claims) {
+        BloomFilter filter = revoked;
+        String tokenMember = tokenMember(claims.tokenId());
+        String userMember = userMember(claims.userId());
+        boolean tokenHit = filter.mightContain(tokenMember);
+        boolean userHit = filter.mightContain(userMember);
+        if (!tokenHit && !userHit) return false;
+
+        // Possible revocation: confirm against Redis
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            if (tokenHit && jedis.zscore(REVOCATION_KEY, tokenMember) != null) {
+                return true;
+            }
+            if (userHit) {
+                Double forgetAt = jedis.zscore(REVOCATION_KEY, userMember);
+                // Scored as revokedAt + lifetime; tokens created up to revokedAt are dead
+                return forgetAt != null && claims.createdAt() <= forgetAt - MAX_LIFETIME_MS;
+            }
+            return false;
+        } catch (JedisException e) {
+            // Fail closed: the filter says this session may have been revoked
+            System.err.println("Redis error while checking session revocation: " + e.getMessage());
+            return true;
+        }
+    }
+
+    private static void addRevocation(String member, long forgetAt) {
+        remember(member);
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            Transaction tx = jedis.multi();
+            tx.zadd(REVOCATION_KEY, forgetAt, member);
+            tx.publish(REVOCATION_CHANNEL, member);
+            tx.exec();
+        } catch (JedisException e) {
+            System.err.println("Redis error while revoking session " + member + ": " + e.getMessage());
+        }
+    }
+
+    private static void remember(String member) {
+        revoked.put(member);
+        BloomFilter next = rebuilding;
+        if (next != null) next.put(member);
+    }
+
+    // Rebuilds the filter from the live revocations, dropping those whose tokens can no longer exist
+    private static synchronized void reloadRevocations() {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            long now = System.currentTimeMillis();
+            jedis.zremrangeByScore(REVOCATION_KEY, 0, now);
+            long live = jedis.zcard(REVOCATION_KEY);
+
+            BloomFilter next = new BloomFilter((int) Math.max(BLOOM_CAPACITY, live * 2), BLOOM_FALSE_POSITIVE_RATE);
+            rebuilding = next; // revocations arriving during the rebuild land in both filters
+            List<String> members = jedis.zrangeByScore(REVOCATION_KEY, now, Double.POSITIVE_INFINITY);
+            members.forEach(next::put);
+            revoked = next;
+            rebuilding = null;
+            System.out.println("Session revocation filter rebuilt: " + members.size() + " entries");
+        } catch (Exception e) {
+            System.err.println("Error rebuilding session revocation filter: " + e.getMessage());
+        }
+    }
+
+    private static String tokenMember(UUID tokenId) {
+        return "t:" + tokenId;
+    }
+
+    private static String userMember(String userId) {
+        return "u:" + userId;
+    }
+
+    private static Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance("HmacSHA256");
+            instance.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
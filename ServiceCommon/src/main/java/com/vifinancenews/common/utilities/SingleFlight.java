@@ -0,0 +1,79 @@
+package com.vifinancenews.common.utilities;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader, everyone else
+ * arriving while it runs waits on the same future instead of repeating the work. Waiters give up
+ * with a TimeoutException after waitTimeoutMs rather than tying up a request thread indefinitely.
+ */
+public class SingleFlight<K, V> {
+    private static final long DEFAULT_WAIT_TIMEOUT_MS = 30_000;
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final long waitTimeoutMs;
+
+    public SingleFlight() {
+        this(DEFAULT_WAIT_TIMEOUT_MS);
+    }
+
+    public SingleFlight(long waitTimeoutMs) {
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) throw cause;
+                if (e.getCause() instanceof Error error) throw error;
+                throw e;
+            }
+        }
+
+        loads.increment();
+        try {
+            V value = loader.call();
+            mine.complete(value);
+            return value;
+        } catch (Throwable t) {
+            // Errors too: an incomplete future would leave every coalesced caller waiting on it
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Fire-and-forget load (e.g. an early refresh); skipped if one is already running for the key
+    public void executeAsync(K key, Callable<V> loader, Executor executor) {
+        if (inFlight.containsKey(key)) return;
+        executor.execute(() -> {
+            try {
+                execute(key, loader);
+            } catch (Exception e) {
+                System.err.println("Background load failed for key " + key + ": " + e.getMessage());
+            }
+        });
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,155 @@
+package com.vifinancenews.common.utilities;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.cdimascio.dotenv.Dotenv;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier user data cache: a bounded in-process L1 in front of the Redis hash cache (L2).
+ * Writers publish invalidations over Redis pub/sub so every replica drops its L1 copy.
+ */
+public class UserDataCache {
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final String INVALIDATION_CHANNEL = "user-data:invalidate";
+
+    private static final long L1_MAX_ENTRIES = Long.parseLong(dotenv.get("USER_L1_MAX_ENTRIES", "10000"));
+    private static final long L1_TTL_SECONDS = Long.parseLong(dotenv.get("USER_L1_TTL_SECONDS", "30"));
+
+    private static final Cache<String, Map<String, String>> l1 = Caffeine.newBuilder()
+            .maximumSize(L1_MAX_ENTRIES)
+            .expireAfterWrite(Duration.ofSeconds(L1_TTL_SECONDS))
+            .recordStats()
+            .build();
+
+    private static final LongAdder l2Hits = new LongAdder();
+    private static final LongAdder l2Misses = new LongAdder();
+    private static final LongAdder invalidationsReceived = new LongAdder();
+
+    private static volatile Thread listener;
+
+    public static Map<String, String> get(String userId) {
+        Map<String, String> cached = l1.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Map<String, String> userData = RedisCacheService.getCachedUserData(userId);
+        if (userData != null) {
+            l2Hits.increment();
+            l1.put(userId, userData);
+        } else {
+            l2Misses.increment();
+        }
+        return userData;
+    }
+
+    // Fetches many users at once: L1 first, then a single Redis pipeline for the rest
+    public static Map<String, Map<String, String>> getBatch(Collection<String> userIds) {
+        Map<String, Map<String, String>> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String userId : userIds) {
+            Map<String, String> cached = l1.getIfPresent(userId);
+            if (cached != null) {
+                result.put(userId, cached);
+            } else {
+                missing.add(userId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, Map<String, String>> fromRedis = RedisCacheService.getCachedUserDataBatch(missing);
+            l2Hits.add(fromRedis.size());
+            l2Misses.add(missing.size() - fromRedis.size());
+            l1.putAll(fromRedis);
+            result.putAll(fromRedis);
+        }
+        return result;
+    }
+
+    public static void put(String userId, Map<String, String> userData) {
+        RedisCacheService.cacheUserData(userId, userData);
+        l1.put(userId, Map.copyOf(RedisCacheService.withoutNulls(userData)));
+    }
+
+    // Overwrites the entry in both tiers with fresh data and tells other replicas to drop their L1 copy
+    public static void replace(String userId, Map<String, String> userData) {
+        put(userId, userData);
+        publishInvalidation(userId);
+    }
+
+    // Drops the entry from both tiers and tells other replicas to drop their L1 copy
+    public static void invalidate(String userId) {
+        l1.invalidate(userId);
+        RedisCacheService.clearUserData(userId);
+        publishInvalidation(userId);
+    }
+
+    private static void publishInvalidation(String userId) {
+        try (Jedis jedis = RedisConnection.getConnection()) {
+            jedis.publish(INVALIDATION_CHANNEL, userId);
+        } catch (JedisException e) {
+            System.err.println("Redis error while publishing invalidation for userId: " + userId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the background subscriber that applies invalidations from other replicas.
+     * Reconnects after Redis errors; safe to call more than once.
+     */
+    public static synchronized void startInvalidationListener() {
+        if (listener != null) return;
+
+        listener = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try (Jedis jedis = RedisConnection.getConnection()) {
+                    jedis.subscribe(new JedisPubSub() {
+                        @Override
+                        public void onMessage(String channel, String userId) {
+                            invalidationsReceived.increment();
+                            l1.invalidate(userId);
+                        }
+                    }, INVALIDATION_CHANNEL);
+                } catch (Exception e) {
+                    System.err.println("User data invalidation listener error: " + e.getMessage());
+                    // Entries published while disconnected may be stale until the L1 TTL expires
+                    l1.invalidateAll();
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "user-data-invalidation");
+        listener.setDaemon(true);
+        listener.start();
+        System.out.println("User data invalidation listener started on channel: " + INVALIDATION_CHANNEL);
+    }
+
+    public static Stats getStats() {
+        var l1Stats = l1.stats();
+        return new Stats(
+                l1Stats.hitCount(),
+                l1Stats.missCount(),
+                l1Stats.evictionCount(),
+                l1.estimatedSize(),
+                l2Hits.sum(),
+                l2Misses.sum(),
+                invalidationsReceived.sum()
+        );
+    }
+
+    public static record Stats(long l1Hits, long l1Misses, long l1Evictions, long l1Size,
+                               long l2Hits, long l2Misses, long invalidationsReceived) {}
+}
@@ -0,0 +1,69 @@
+package com.vifinancenews.common.utilities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vifinancenews.common.models.SessionData;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-lookup CPU time and allocation of the binary session codec versus the JSON path it replaced
+ * (String value parsed into a Map with Jackson). Not a unit test; run by hand:
+ * <pre>
+ *   java -cp target/classes:target/test-classes:&lt;jackson jars&gt; com.vifinancenews.common.utilities.SessionCodecBenchmark
+ * </pre>
+ * Uses com.sun.management.ThreadMXBean, so it needs a HotSpot-based JVM.
+ */
+public class SessionCodecBenchmark {
+    private static final int WARMUP_ITERATIONS = 500_000;
+    private static final int MEASURED_ITERATIONS = 2_000_000;
+    private static final String USER_ID = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps the JIT from discarding the decoded values
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Object> legacySession = new HashMap<>();
+        legacySession.put("userId", USER_ID);
+        byte[] json = objectMapper.writeValueAsString(legacySession).getBytes(StandardCharsets.UTF_8);
+        byte[] binary = SessionCodec.encode(new SessionData(USER_ID, System.currentTimeMillis()));
+
+        System.out.println("value size: json " + json.length + " B, binary " + binary.length + " B");
+        measure("json  (jedis.get String + readValue Map)", () -> {
+            Map<?, ?> session = objectMapper.readValue(new String(json, StandardCharsets.UTF_8), Map.class);
+            return session.get("userId").hashCode();
+        });
+        measure("binary decode (SessionData)", () -> SessionCodec.decode(binary).hashCode());
+        measure("binary decodeUserId", () -> SessionCodec.decodeUserId(binary).hashCode());
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void measure(String name, Lookup lookup) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += lookup.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += lookup.run();
+        }
+        long cpuNanos = threads.getCurrentThreadCpuTime() - cpuBefore;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        System.out.printf("%-42s %8.1f ns/lookup %8.1f B/lookup%n",
+                name, cpuNanos / (double) MEASURED_ITERATIONS, bytes / (double) MEASURED_ITERATIONS);
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        int run() throws Exception;
+    }
+}
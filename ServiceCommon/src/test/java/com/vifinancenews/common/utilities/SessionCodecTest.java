@@ -0,0 +1,109 @@
+package com.vifinancenews.common.utilities;
+
+import com.vifinancenews.common.models.SessionData;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionCodecTest {
+
+    private static final String USER_ID = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Test
+    void roundTripsBinaryRecord() {
+        SessionData session = new SessionData(USER_ID, 1_700_000_000_123L);
+
+        byte[] encoded = SessionCodec.encode(session);
+
+        assertEquals(1, encoded[0], "version byte");
+        assertEquals(1 + 2 + USER_ID.length() + 8, encoded.length);
+        assertEquals(session, SessionCodec.decode(encoded));
+        assertEquals(USER_ID, SessionCodec.decodeUserId(encoded));
+    }
+
+    @Test
+    void roundTripsNonAsciiUserId() {
+        SessionData session = new SessionData("người-dùng-✓", 42L);
+
+        byte[] encoded = SessionCodec.encode(session);
+
+        assertEquals(session, SessionCodec.decode(encoded));
+        assertEquals(session.userId(), SessionCodec.decodeUserId(encoded));
+    }
+
+    @Test
+    void roundTripsEmptyUserId() {
+        SessionData session = new SessionData("", 7L);
+
+        assertEquals(session, SessionCodec.decode(SessionCodec.encode(session)));
+    }
+
+    @Test
+    void rejectsUserIdLongerThanLengthPrefix() {
+        SessionData session = new SessionData("x".repeat(0x10000), 1L);
+
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.encode(session));
+    }
+
+    @Test
+    void readsLegacyJsonSessions() {
+        byte[] legacy = ("{\"userId\":\"" + USER_ID + "\"}").getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new SessionData(USER_ID, 0L), SessionCodec.decode(legacy));
+        assertEquals(USER_ID, SessionCodec.decodeUserId(legacy));
+    }
+
+    @Test
+    void readsLegacyJsonWithExtraFields() {
+        byte[] legacy = ("{\"role\":\"user\",\"userId\":\"" + USER_ID + "\",\"n\":3}").getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(USER_ID, SessionCodec.decodeUserId(legacy));
+    }
+
+    @Test
+    void legacyJsonWithoutUserIdIsNoSession() {
+        byte[] legacy = "{\"other\":1}".getBytes(StandardCharsets.UTF_8);
+
+        assertNull(SessionCodec.decode(legacy));
+        assertNull(SessionCodec.decodeUserId(legacy));
+    }
+
+    @Test
+    void malformedLegacyJsonIsRejected() {
+        byte[] legacy = "{\"userId\":".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decode(legacy));
+    }
+
+    @Test
+    void missingValueIsNoSession() {
+        assertNull(SessionCodec.decode(null));
+        assertNull(SessionCodec.decode(new byte[0]));
+        assertNull(SessionCodec.decodeUserId(null));
+        assertNull(SessionCodec.decodeUserId(new byte[0]));
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] encoded = SessionCodec.encode(new SessionData(USER_ID, 1L));
+        encoded[0] = 2;
+
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decode(encoded));
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeUserId(encoded));
+    }
+
+    @Test
+    void truncatedRecordIsRejected() {
+        byte[] encoded = SessionCodec.encode(new SessionData(USER_ID, 1L));
+
+        byte[] withoutCreatedAt = Arrays.copyOf(encoded, encoded.length - 4);
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decode(withoutCreatedAt));
+
+        byte[] withoutUserId = Arrays.copyOf(encoded, 10);
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decode(withoutUserId));
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decodeUserId(withoutUserId));
+    }
+}
@@ -1,28 +1,70 @@
 package com.vifinancenews;
 
+import com.vifinancenews.common.config.AdminServer;
+import com.vifinancenews.common.config.DatabaseConfig;
+import com.vifinancenews.common.daos.TransactionExecutor;
+import com.vifinancenews.common.migrations.SchemaMigrator;
 import com.vifinancenews.common.utilities.AccountDeletionScheduler;
+import com.vifinancenews.common.utilities.JobLease;
+import com.vifinancenews.common.utilities.LocalJobLease;
+import com.vifinancenews.common.utilities.RedisJobLease;
+import com.vifinancenews.common.utilities.SessionManager;
+import com.vifinancenews.common.utilities.UserDataCache;
 import com.vifinancenews.user.controllers.AvatarController;
 import com.vifinancenews.user.controllers.UserController;
+import com.vifinancenews.user.middleware.SessionFilter;
+import com.vifinancenews.user.services.AccountPurgeJob;
 import com.vifinancenews.user.services.AccountService;
 
+import io.github.cdimascio.dotenv.Dotenv;
 import io.javalin.Javalin;
 import io.javalin.http.staticfiles.Location;
 
+import java.util.concurrent.TimeUnit;
+
 public class Main {
     public static void main(String[] args) {
-        // Define the deletion task as a Runnable
-        Runnable cleanupTask = () -> {
-            try {
-                boolean deleted = AccountService.permanentlyDeleteExpiredAccounts(30); // Cleanup expired accounts older than 30 days
-                System.out.println("Account cleanup executed. Any accounts deleted: " + (deleted ? "Yes" : "No"));
-            } catch (Exception e) {
-                System.err.println("Account cleanup failed:");
-                e.printStackTrace();
-            }
-        };
-
-        // Start the scheduler to run the cleanup task periodically (every 24 hours in this case)
-        AccountDeletionScheduler.start(cleanupTask, 0, 24);  // 0 delay, 24 hours interval
+        // Bring the schema up to date before any job or handler touches it (MIGRATE_ON_STARTUP)
+        SchemaMigrator.migrateOnStartup();
+
+        Dotenv dotenv = Dotenv.load();
+        String purgeMode = dotenv.get("PURGE_MODE", "continuous");
+        boolean localLease = dotenv.get("JOB_LEASE_MODE", "redis").equalsIgnoreCase("local"); // local = single node / tests
+
+        if (purgeMode.equalsIgnoreCase("daily")) {
+            // Define the deletion task as a Runnable
+            Runnable cleanupTask = () -> {
+                try {
+                    boolean deleted = AccountService.permanentlyDeleteExpiredAccounts(30); // Cleanup expired accounts older than 30 days
+                    System.out.println("Account cleanup executed. Any accounts deleted: " + (deleted ? "Yes" : "No"));
+                } catch (Exception e) {
+                    System.err.println("Account cleanup failed:");
+                    e.printStackTrace();
+                }
+            };
+
+            // Start the scheduler to run the cleanup task periodically (every 24 hours in this case)
+            // Only the lease holder runs it; the lease outlives most of the interval so other replicas skip their run
+            JobLease lease = localLease ? new LocalJobLease() : new RedisJobLease("account-cleanup", TimeUnit.HOURS.toMillis(23));
+            AccountDeletionScheduler.start(lease.guard(cleanupTask), 0, 24);  // 0 delay, 24 hours interval
+        } else {
+            // Continuous mode: small checkpointed batches under a rows-per-second budget
+            long intervalSeconds = Long.parseLong(dotenv.get("PURGE_INTERVAL_SECONDS", "30"));
+            AccountPurgeJob purgeJob = new AccountPurgeJob(
+                    30, // Cleanup expired accounts older than 30 days
+                    Integer.parseInt(dotenv.get("PURGE_ROWS_PER_SECOND", "20")),
+                    intervalSeconds,
+                    Long.parseLong(dotenv.get("PURGE_LATENCY_THRESHOLD_MS", "250")),
+                    localLease ? new LocalJobLease() : new RedisJobLease("account-purge", TimeUnit.SECONDS.toMillis(intervalSeconds * 3))
+            );
+            AccountDeletionScheduler.startWithFixedDelay(purgeJob, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+
+        // Keep this replica's in-process user data cache coherent with updates made elsewhere
+        UserDataCache.startInvalidationListener();
+
+        // Redis sessions or signed tokens (SESSION_MODE); starts the revocation listener in token mode
+        SessionManager.start();
 
         Javalin app = Javalin.create(config -> {
             // CORS and Routing Optimizations
@@ -54,6 +96,10 @@ public class Main {
             ctx.cookie("session_timeout", String.valueOf(System.currentTimeMillis()), 600); // Session timeout in seconds
         });
 
+        // Resolve the session once per request (typed principal on the context)
+        app.before("/api/user/*", SessionFilter.requireSession);
+        app.before("/api/avatar/*", SessionFilter.optionalSession);
+
         // **User Routes**
         app.get("/api/user/profile", UserController.getUserProfile);          // Get user profile
         app.put("/api/user/update-info", UserController.updateInfo);  // Update username & bio
@@ -65,6 +111,12 @@ public class Main {
         // Avatar Routes
         app.post("/api/avatar/upload", AvatarController.uploadAvatar);
 
+        // Internal Routes (admin listener only: loopback by default, never the public port)
+        Javalin admin = AdminServer.start(7998);
+        admin.get("/api/internal/db-pool", ctx -> ctx.json(DatabaseConfig.getPoolStats()));
+        admin.get("/api/internal/cache-stats", ctx -> ctx.json(UserDataCache.getStats()));
+        admin.get("/api/internal/tx-retries", ctx -> ctx.json(TransactionExecutor.getRetryStats()));
+
         System.out.println("Server running on http://localhost:6998");
     }
 
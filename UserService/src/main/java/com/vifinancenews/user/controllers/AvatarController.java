@@ -1,10 +1,13 @@
 package com.vifinancenews.user.controllers;
 
+import com.vifinancenews.user.middleware.SessionFilter;
+import com.vifinancenews.user.middleware.UserPrincipal;
 import com.vifinancenews.user.services.AvatarService;
 import io.javalin.http.UploadedFile;
 import io.javalin.http.Handler;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.UUID;
 
@@ -13,7 +16,7 @@ public class AvatarController {
     private static final AvatarService avatarService = new AvatarService();
 
     public static Handler uploadAvatar = ctx -> {
-        String userId = ctx.sessionAttribute("userId"); // May be null for guest
+        UserPrincipal principal = SessionFilter.principal(ctx); // May be null for guest
     
         UploadedFile uploadedFile = ctx.uploadedFile("avatar");
         if (uploadedFile == null) {
@@ -38,7 +41,10 @@ public class AvatarController {
         String originalFilename = uploadedFile.filename();
     
         try {
-            UUID uuid = userId != null ? UUID.fromString(userId) : UUID.randomUUID(); // guest fallback
+            // Stable folder per account (the session holds the hashed account id, not a UUID)
+            UUID uuid = principal != null
+                    ? UUID.nameUUIDFromBytes(principal.userId().getBytes(StandardCharsets.UTF_8))
+                    : UUID.randomUUID(); // guest fallback
             String avatarUrl = avatarService.uploadAvatar(uuid, avatarStream, originalFilename, contentType);
     
             if (avatarUrl != null) {
@@ -1,10 +1,12 @@
 package com.vifinancenews.user.controllers;
 
+import com.vifinancenews.user.middleware.SessionFilter;
 import com.vifinancenews.user.services.AccountService;
 import com.vifinancenews.common.models.Account;
-import com.vifinancenews.common.utilities.RedisSessionManager;
+import com.vifinancenews.common.utilities.SessionManager;
 import io.javalin.http.Handler;
 
+import java.time.format.DateTimeParseException;
 import java.util.Map;
 
 public class UserController {
@@ -13,19 +15,8 @@ public class UserController {
 
     // Handler for retrieving user profile
     public static Handler getUserProfile = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        if (sessionId == null) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        Map<String, Object> sessionData = RedisSessionManager.getSession(sessionId);
-        if (sessionData == null || !sessionData.containsKey("userId")) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        String userId = (String) sessionData.get("userId");
+        // Resolved once by SessionFilter.requireSession
+        String userId = SessionFilter.principal(ctx).userId();
         Account account = accountService.getUserProfile(userId);
         if (account == null) {
             ctx.status(404).result("User not found");
@@ -36,19 +27,8 @@ public class UserController {
 
     // Handler for updating username and bio
     public static Handler updateInfo = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        if (sessionId == null) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        Map<String, Object> sessionData = RedisSessionManager.getSession(sessionId);
-        if (sessionData == null || !sessionData.containsKey("userId")) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        String userId = (String) sessionData.get("userId");
+        // Resolved once by SessionFilter.requireSession
+        String userId = SessionFilter.principal(ctx).userId();
         Map<String, String> requestData = ctx.bodyAsClass(Map.class);
 
         String userName = requestData.get("userName");
@@ -75,19 +55,8 @@ public class UserController {
 
     // Handler for updating avatar link
     public static Handler updateAvatar = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        if (sessionId == null) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        Map<String, Object> sessionData = RedisSessionManager.getSession(sessionId);
-        if (sessionData == null || !sessionData.containsKey("userId")) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        String userId = (String) sessionData.get("userId");
+        // Resolved once by SessionFilter.requireSession
+        String userId = SessionFilter.principal(ctx).userId();
         Map<String, String> requestData = ctx.bodyAsClass(Map.class);
 
         String avatarLink = requestData.get("avatarLink");
@@ -108,23 +77,14 @@ public class UserController {
 
     // Handler for soft deleting user
     public static Handler deleteUser = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        if (sessionId == null) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        Map<String, Object> sessionData = RedisSessionManager.getSession(sessionId);
-        if (sessionData == null || !sessionData.containsKey("userId")) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        String userId = (String) sessionData.get("userId");
+        // Resolved once by SessionFilter.requireSession
+        String userId = SessionFilter.principal(ctx).userId();
         boolean softDeleted = accountService.softDeleteUser(userId);
 
         if (softDeleted) {
-            RedisSessionManager.destroySession(sessionId);
+            // Log out every device, not just this one
+            SessionManager.closeAll(userId);
+            SessionFilter.evict(SessionFilter.principal(ctx).sessionId());
             ctx.status(200).result("Your account has been deactivated for 30 days before permanent deletion. You can restore it during this period.");
         } else {
             ctx.status(400).result("Failed to soft delete user.");
@@ -133,20 +93,20 @@ public class UserController {
 
     // Handler to get paginated list of saved articles
     public static Handler getSavedArticles = ctx -> {
-        String sessionId = ctx.cookie("SESSION_ID");
-        if (sessionId == null) {
-            ctx.status(401).result("Unauthorized");
+        // Resolved once by SessionFilter.requireSession
+        String userId = SessionFilter.principal(ctx).userId();
+
+        // Cursor mode (fast path): ?cursor= for the first page, then the returned nextCursor
+        String cursor = ctx.queryParam("cursor");
+        if (cursor != null) {
+            try {
+                ctx.json(accountService.getSavedArticlesByCursor(userId, cursor, 5)); // 5 articles per page
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                ctx.status(400).result("Invalid cursor");
+            }
             return;
         }
 
-        Map<String, Object> sessionData = RedisSessionManager.getSession(sessionId);
-        if (sessionData == null || !sessionData.containsKey("userId")) {
-            ctx.status(401).result("Unauthorized");
-            return;
-        }
-
-        String userId = (String) sessionData.get("userId");
-
         // Parse page query param, default to 1 if missing or invalid
         int page;
         try {
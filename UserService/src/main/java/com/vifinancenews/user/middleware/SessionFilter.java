@@ -0,0 +1,67 @@
+package com.vifinancenews.user.middleware;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vifinancenews.common.utilities.SessionManager;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+
+import java.time.Duration;
+
+/**
+ * Resolves the SESSION_ID cookie once per request into a UserPrincipal stored on the context.
+ * Resolved sessions are kept in a short-lived local cache so hot users skip the Redis round trip.
+ */
+public class SessionFilter {
+
+    private static final String PRINCIPAL_ATTRIBUTE = "principal";
+
+    // Short TTL bounds how long a session destroyed elsewhere (e.g. logout in AuthService) stays usable here
+    private static final Cache<String, UserPrincipal> sessionCache = Caffeine.newBuilder()
+            .maximumSize(50_000)
+            .expireAfterWrite(Duration.ofSeconds(5))
+            .build();
+
+    // Requires a valid session; responds 401 and stops the chain otherwise
+    public static Handler requireSession = ctx -> {
+        if (ctx.method() == HandlerType.OPTIONS) return;
+
+        if (resolve(ctx) == null) {
+            ctx.status(401).result("Unauthorized");
+            ctx.skipRemainingHandlers();
+        }
+    };
+
+    // Resolves the session if present but lets anonymous requests through
+    public static Handler optionalSession = ctx -> resolve(ctx);
+
+    public static UserPrincipal principal(Context ctx) {
+        return ctx.attribute(PRINCIPAL_ATTRIBUTE);
+    }
+
+    // Drops a session from the local cache, e.g. after the handler destroyed it
+    public static void evict(String sessionId) {
+        sessionCache.invalidate(sessionId);
+    }
+
+    private static UserPrincipal resolve(Context ctx) {
+        UserPrincipal principal = principal(ctx);
+        if (principal != null) return principal;
+
+        String sessionId = ctx.cookie(SessionManager.COOKIE_NAME);
+        if (sessionId == null) return null;
+
+        principal = sessionCache.getIfPresent(sessionId);
+        if (principal == null) {
+            // Redis lookup or local token verification, depending on SESSION_MODE
+            String userId = SessionManager.resolveUserId(ctx);
+            if (userId == null) return null;
+            principal = new UserPrincipal(userId, sessionId);
+            sessionCache.put(sessionId, principal);
+        }
+
+        ctx.attribute(PRINCIPAL_ATTRIBUTE, principal);
+        return principal;
+    }
+}
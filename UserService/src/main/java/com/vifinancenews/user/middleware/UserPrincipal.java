@@ -0,0 +1,4 @@
+package com.vifinancenews.user.middleware;
+
+// Authenticated caller resolved from the SESSION_ID cookie; userId is the hashed account id
+public record UserPrincipal(String userId, String sessionId) {}
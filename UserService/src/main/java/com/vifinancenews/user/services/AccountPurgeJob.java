@@ -0,0 +1,116 @@
+package com.vifinancenews.user.services;
+
+import com.vifinancenews.common.daos.AccountDAO;
+import com.vifinancenews.common.daos.AccountDAO.PurgeBatch;
+import com.vifinancenews.common.utilities.JobLease;
+import com.vifinancenews.common.utilities.RedisCacheService;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Continuous purge of expired soft-deleted accounts.
+ * Each run removes one small batch sized by a rows-per-second budget, persists the last processed
+ * deleted_at as a checkpoint so a restart resumes where it left off, and backs off while DB latency is high.
+ * Only the replica holding the lease runs batches; checkpoint writes are fenced by the lease token.
+ */
+public class AccountPurgeJob implements Runnable {
+
+    private static final String CHECKPOINT_NAME = "account-purge";
+
+    private final int retentionDays;
+    private final int batchSize;
+    private final long latencyThresholdMs;
+    private final long maxPauseMs;
+    private final JobLease lease;
+
+    private LocalDateTime checkpoint;
+    private long checkpointToken = 0;
+    private double latencyEwmaMs = 0.0;
+    private long pauseMs = 0;
+    private long pausedUntil = 0;
+
+    /**
+     * @param retentionDays      days an account stays in deleted_accounts before permanent deletion
+     * @param rowsPerSecond      purge budget; each run deletes at most rowsPerSecond * intervalSeconds rows
+     * @param intervalSeconds    delay between runs, used to size each batch
+     * @param latencyThresholdMs smoothed batch latency above which the job pauses
+     * @param lease              cluster-wide ownership of the job
+     */
+    public AccountPurgeJob(int retentionDays, int rowsPerSecond, long intervalSeconds, long latencyThresholdMs, JobLease lease) {
+        this.retentionDays = retentionDays;
+        this.batchSize = (int) Math.max(1, Math.min(10_000, rowsPerSecond * intervalSeconds));
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.maxPauseMs = Math.max(60_000L, intervalSeconds * 1000 * 16);
+        this.lease = lease;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // Renew even while paused so a backoff does not hand the job to another replica
+            if (!lease.tryAcquire()) {
+                return;
+            }
+
+            if (System.currentTimeMillis() < pausedUntil) {
+                return;
+            }
+
+            // Reload the checkpoint whenever the lease is (re)acquired; another replica may have advanced it
+            long token = lease.fencingToken();
+            if (token != checkpointToken) {
+                checkpoint = loadCheckpoint();
+                checkpointToken = token;
+            }
+
+            long start = System.nanoTime();
+            PurgeBatch batch = AccountDAO.purgeExpiredAccountsBatch(retentionDays, checkpoint, batchSize);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            if (batch.deleted() > 0) {
+                System.out.printf("Account purge batch: scanned=%d, deleted=%d, %d ms, checkpoint=%s%n",
+                                  batch.scanned(), batch.deleted(), elapsedMs, batch.lastDeletedAt());
+            }
+
+            if (batch.lastDeletedAt() != null && !batch.lastDeletedAt().equals(checkpoint)) {
+                checkpoint = batch.lastDeletedAt();
+                if (!RedisCacheService.storeCheckpoint(CHECKPOINT_NAME, checkpoint.toString(), token)) {
+                    // A newer lease holder owns the checkpoint; resync on the next run
+                    checkpointToken = 0;
+                }
+            }
+
+            applyBackoff(elapsedMs);
+        } catch (Exception e) {
+            System.err.println("Account purge batch failed: " + e.getMessage());
+            applyBackoff(latencyThresholdMs * 2);
+        }
+    }
+
+    // Pause with exponential backoff while smoothed latency stays above the threshold
+    private void applyBackoff(long elapsedMs) {
+        latencyEwmaMs = latencyEwmaMs == 0.0 ? elapsedMs : 0.8 * latencyEwmaMs + 0.2 * elapsedMs;
+
+        if (latencyEwmaMs > latencyThresholdMs) {
+            pauseMs = pauseMs == 0 ? 5_000 : Math.min(maxPauseMs, pauseMs * 2);
+            pausedUntil = System.currentTimeMillis() + pauseMs;
+            System.out.printf("Account purge paused for %d ms (latency %.1f ms > %d ms)%n",
+                              pauseMs, latencyEwmaMs, latencyThresholdMs);
+        } else {
+            pauseMs = 0;
+        }
+    }
+
+    private LocalDateTime loadCheckpoint() {
+        String stored = RedisCacheService.getCheckpoint(CHECKPOINT_NAME);
+        if (stored == null) return null;
+        try {
+            System.out.println("Account purge resuming from checkpoint: " + stored);
+            return LocalDateTime.parse(stored);
+        } catch (DateTimeParseException e) {
+            System.err.println("Ignoring invalid account purge checkpoint: " + stored);
+            return null;
+        }
+    }
+}
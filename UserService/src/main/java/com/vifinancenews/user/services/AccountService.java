@@ -2,64 +2,160 @@ package com.vifinancenews.user.services;
 
 import com.vifinancenews.common.daos.AccountDAO;
 import com.vifinancenews.common.daos.IdentifierDAO;
+import com.vifinancenews.common.daos.ReadConsistency;
 import com.vifinancenews.common.models.Account;
 import com.vifinancenews.common.models.Identifier;
 import com.vifinancenews.common.utilities.RedisCacheService;
+import com.vifinancenews.common.utilities.SingleFlight;
+import com.vifinancenews.common.utilities.UserDataCache;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class AccountService {
 
     // ========== User Profile ==========
 
+    // Cluster-wide: how long one replica may hold the load lock, and how long others wait for its result
+    private static final long PROFILE_LOCK_TTL_MS = 3000;
+    private static final long PROFILE_LOCK_WAIT_MS = 1000;
+    private static final long PROFILE_LOCK_POLL_MS = 50;
+    // Upper bound for a request coalesced onto another thread's load (lock wait plus a slow DB read)
+    private static final long PROFILE_LOAD_WAIT_MS = 5000;
+
+    // One DB load per profile per replica at a time; concurrent misses wait on the same load
+    private static final SingleFlight<String, Account> profileLoads = new SingleFlight<>(PROFILE_LOAD_WAIT_MS);
+    private static final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Early refresh (XFetch): larger beta refreshes earlier
+    private static final double EARLY_REFRESH_BETA = 1.0;
+    private static final String LOAD_TIME_FIELD = "_loadMs";
+    private static final String EXPIRES_AT_FIELD = "_expiresAt";
+
+    // What another replica's load produced: its cached profile, or data == null if it found no account
+    private static record LoadedElsewhere(Map<String, String> data) {}
+
     public Account getUserProfile(String accountId) throws SQLException {
-        // Check cache
-        Map<String, String> cachedData = RedisCacheService.getCachedUserData(accountId);
+        // Check cache (in-process L1, then Redis)
+        Map<String, String> cachedData = UserDataCache.get(accountId);
         if (cachedData != null) {
+            if (shouldRefreshEarly(cachedData)) {
+                // Reload in the background while this and other callers keep using the cached copy
+                profileLoads.executeAsync(accountId, () -> loadUserProfile(accountId), refreshExecutor);
+            }
             return mapToAccount(cachedData, accountId);
         }
 
-        // Fallback to DB
-        Account account = AccountDAO.getAccountByAccountId(accountId);
-        if (account != null) {
-         // Make sure fields are not null before caching
-            if (account.getUserName() != null && account.getAvatarLink() != null && account.getBio() != null) {
-                RedisCacheService.cacheUserData(accountId, mapAccountToCacheData(account));
+        // Fallback to DB, coalesced with any load already running for this profile
+        try {
+            return profileLoads.execute(accountId, () -> loadUserProfile(accountId));
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Failed to load profile for accountId: " + accountId, e);
+        }
+    }
+
+    private Account loadUserProfile(String accountId) throws SQLException {
+        String lockName = "profile:" + accountId;
+        String lockToken = RedisCacheService.tryLock(lockName, PROFILE_LOCK_TTL_MS);
+        if (lockToken == null) {
+            // Another replica is loading this profile; give it a moment to land in the cache
+            LoadedElsewhere loaded = awaitLoadElsewhere(accountId);
+            if (loaded != null) {
+                return loaded.data() != null ? mapToAccount(loaded.data(), accountId) : null;
             }
-        } else {
-        // Log if account is null for further debugging
-        System.out.println("Account not found for accountId: " + accountId);
         }
 
-        return account;
+        try {
+            long started = System.nanoTime();
+            Account account = AccountDAO.getAccountByAccountId(accountId);
+            long loadMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+            if (account != null) {
+                // Null avatar/bio are cached as "" and mapped back to null by mapToAccount
+                Map<String, String> cacheData = mapAccountToCacheData(account);
+                cacheData.put(LOAD_TIME_FIELD, String.valueOf(loadMs));
+                cacheData.put(EXPIRES_AT_FIELD, String.valueOf(
+                        System.currentTimeMillis() + RedisCacheService.USER_DATA_EXPIRY_SECONDS * 1000L));
+                UserDataCache.put(accountId, cacheData);
+            } else {
+                // Log if account is null for further debugging
+                System.out.println("Account not found for accountId: " + accountId);
+                RedisCacheService.markUserMissing(accountId);
+            }
+
+            return account;
+        } finally {
+            if (lockToken != null) {
+                RedisCacheService.unlock(lockName, lockToken);
+            }
+        }
     }
 
-    public boolean updateUserNameAndBio(String accountId, String userName, String bio) throws SQLException {
-        boolean updated = AccountDAO.updateUsernameAndBio(accountId, userName, bio);
+    // Null if the other replica's load did not land within PROFILE_LOCK_WAIT_MS
+    private LoadedElsewhere awaitLoadElsewhere(String accountId) {
+        long deadline = System.currentTimeMillis() + PROFILE_LOCK_WAIT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(PROFILE_LOCK_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Map<String, String> cachedData = UserDataCache.get(accountId);
+            if (cachedData != null) {
+                return new LoadedElsewhere(cachedData);
+            }
+            if (RedisCacheService.isUserMarkedMissing(accountId)) {
+                return new LoadedElsewhere(null);
+            }
+        }
+        return null;
+    }
 
-        if (updated) {
-            RedisCacheService.clearUserData(accountId);
+    // XFetch: refresh with rising probability as expiry nears, scaled by how long a load takes
+    private boolean shouldRefreshEarly(Map<String, String> cachedData) {
+        String loadMs = cachedData.get(LOAD_TIME_FIELD);
+        String expiresAt = cachedData.get(EXPIRES_AT_FIELD);
+        if (loadMs == null || expiresAt == null) return false; // written by an update, not a load
 
-            Account updatedAccount = AccountDAO.getAccountByAccountId(accountId);
-            RedisCacheService.cacheUserData(accountId, mapAccountToCacheData(updatedAccount));
+        try {
+            double gap = -Long.parseLong(loadMs) * EARLY_REFRESH_BETA * Math.log(ThreadLocalRandom.current().nextDouble());
+            return System.currentTimeMillis() + gap >= Long.parseLong(expiresAt);
+        } catch (NumberFormatException e) {
+            return false;
         }
+    }
+
+    public boolean updateUserNameAndBio(String accountId, String userName, String bio) throws SQLException {
+        // The UPDATE returns the new row, so the cache is refreshed without a second DB read
+        Account updatedAccount = AccountDAO.updateUsernameAndBioReturning(accountId, userName, bio);
 
-        return updated;
+        if (updatedAccount != null) {
+            UserDataCache.replace(accountId, mapAccountToCacheData(updatedAccount));
+        }
+
+        return updatedAccount != null;
     }
 
     public boolean updateAvatar(String accountId, String avatarLink) throws SQLException {
-        boolean updated = AccountDAO.updateAvatar(accountId, avatarLink);
+        Account updatedAccount = AccountDAO.updateAvatarReturning(accountId, avatarLink);
 
-        if (updated) {
-            RedisCacheService.clearUserData(accountId);
-            Account updatedAccount = AccountDAO.getAccountByAccountId(accountId);
-            RedisCacheService.cacheUserData(accountId, mapAccountToCacheData(updatedAccount));
+        if (updatedAccount != null) {
+            UserDataCache.replace(accountId, mapAccountToCacheData(updatedAccount));
         }
 
-        return updated;
+        return updatedAccount != null;
     }
 
     // ========== Account Deletion ==========
@@ -67,7 +163,7 @@ public class AccountService {
     public boolean softDeleteUser(String accountId) throws SQLException {
         boolean deleted = AccountDAO.moveAccountToDeleted(accountId);
         if (deleted) {
-            RedisCacheService.clearUserData(accountId);
+            UserDataCache.invalidate(accountId);
         }
         return deleted;
     }
@@ -82,7 +178,7 @@ public class AccountService {
         boolean identifierDeleted = user != null && IdentifierDAO.deleteIdentifierByUserId(user.getId());
 
         if (accountDeleted && identifierDeleted) {
-            RedisCacheService.clearUserData(accountId);
+            UserDataCache.invalidate(accountId);
         }
 
         return accountDeleted && identifierDeleted;
@@ -94,9 +190,55 @@ public class AccountService {
         return identifiersDeleted || accountsDeleted;
     }
 
-    public Map<String, Object> getSavedArticles(String userId, int page, int pageSize) {
-        return AccountDAO.getSavedArticles(userId, page, pageSize);
-}
+    // Listings are not cached and articles are saved by another service, so a follower read (a few
+    // seconds old, served by the nearest replica) is no staler than the 60 s cached total next to it
+    private static final ReadConsistency SAVED_ARTICLES_READ = ReadConsistency.FOLLOWER;
+
+    public Map<String, Object> getSavedArticles(String userId, int page, int pageSize) throws SQLException {
+        List<Map<String, Object>> articles = AccountDAO.getSavedArticlesPage(userId, page, pageSize, SAVED_ARTICLES_READ);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("articles", articles);
+        result.put("totalCount", getSavedArticleCount(userId));
+        return result;
+    }
+
+    // Cursor (keyset) mode: cursor is the opaque nextCursor from the previous page, or null for the first page
+    public Map<String, Object> getSavedArticlesByCursor(String userId, String cursor, int pageSize) throws SQLException {
+        LocalDateTime savedAt = null;
+        String articleId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            savedAt = LocalDateTime.parse(parts[0]);
+            articleId = parts[1];
+        }
+
+        // Fetch one extra row to know whether another page exists
+        List<Map<String, Object>> articles = AccountDAO.getSavedArticlesAfter(userId, savedAt, articleId, pageSize + 1, SAVED_ARTICLES_READ);
+        String nextCursor = null;
+        if (articles.size() > pageSize) {
+            articles = new ArrayList<>(articles.subList(0, pageSize));
+            Map<String, Object> last = articles.get(articles.size() - 1);
+            nextCursor = encodeCursor((LocalDateTime) last.get("savedAt"), (String) last.get("articleId"));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("articles", articles);
+        result.put("nextCursor", nextCursor);
+        result.put("totalCount", getSavedArticleCount(userId));
+        return result;
+    }
+
+    private int getSavedArticleCount(String userId) throws SQLException {
+        Integer cached = RedisCacheService.getCachedSavedArticleCount(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        int count = AccountDAO.countSavedArticles(userId);
+        RedisCacheService.cacheSavedArticleCount(userId, count);
+        return count;
+    }
 
 
     // ========== Helpers ==========
@@ -112,6 +254,20 @@ public class AccountService {
     }
     
 
+    private String encodeCursor(LocalDateTime savedAt, String articleId) {
+        String raw = savedAt.toString() + "|" + articleId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = raw.split("\\|", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return parts;
+    }
+
     private Account mapToAccount(Map<String, String> data, String accountId) {
         String avatarLink = data.get("avatarLink");
         String bio = data.get("bio");